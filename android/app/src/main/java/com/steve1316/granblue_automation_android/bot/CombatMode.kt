@@ -113,12 +113,18 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 		}
 	}
 
+	// Headers of the screens that show up once the battle has ended in order of priority.
+	private val battleEndHeaders = listOf("no_loot", "battle_concluded", "exp_gained", "loot_collected")
+
 	/**
 	 * Perform checks to see if the battle ended or not.
 	 *
 	 * @return Return "Nothing" if combat is still continuing. Otherwise, raise a CombatModeException whose message is the event name that caused the battle to end.
 	 */
 	private fun checkForBattleEnd(): String {
+		// Check the battle end screens in priority order against a single screenshot instead of taking one for each of them.
+		val screen = game.imageUtils.classifyScreen(battleEndHeaders)?.screen
+
 		when {
 			game.configData.farmingMode == "Raid" && game.configData.enableAutoExitRaid && (System.currentTimeMillis() - startTime >= game.configData.timeAllowedUntilAutoExitRaid) -> {
 				MessageLog.printToLog("\n####################", tag)
@@ -128,7 +134,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 				MessageLog.printToLog("####################", tag)
 				throw CombatModeException("Time Exceeded")
 			}
-			retreatCheckFlag || game.imageUtils.confirmLocation("no_loot", tries = 1, suppressError = true, bypassGeneralAdjustment = true) -> {
+			retreatCheckFlag || screen == "no_loot" -> {
 				MessageLog.printToLog("\n####################", tag)
 				MessageLog.printToLog("####################", tag)
 				MessageLog.printToLog("[COMBAT] Combat Mode has ended with not loot.", tag)
@@ -136,7 +142,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 				MessageLog.printToLog("####################", tag)
 				throw CombatModeException("No Loot")
 			}
-			game.imageUtils.confirmLocation("battle_concluded", tries = 1, suppressError = true, bypassGeneralAdjustment = true) -> {
+			screen == "battle_concluded" -> {
 				MessageLog.printToLog("\n[COMBAT] Battle concluded suddenly.", tag)
 				MessageLog.printToLog("\n####################", tag)
 				MessageLog.printToLog("####################", tag)
@@ -146,7 +152,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 				game.findAndClickButton("reload")
 				throw CombatModeException("Time Exceeded")
 			}
-			game.imageUtils.confirmLocation("exp_gained", tries = 1, suppressError = true, bypassGeneralAdjustment = true) -> {
+			screen == "exp_gained" -> {
 				MessageLog.printToLog("\n####################", tag)
 				MessageLog.printToLog("####################", tag)
 				MessageLog.printToLog("[COMBAT] Ending Combat Mode.", tag)
@@ -154,7 +160,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 				MessageLog.printToLog("####################", tag)
 				throw CombatModeException("Exp Gained")
 			}
-			game.imageUtils.confirmLocation("loot_collected", tries = 1, suppressError = true, bypassGeneralAdjustment = true) -> {
+			screen == "loot_collected" -> {
 				MessageLog.printToLog("\n####################", tag)
 				MessageLog.printToLog("####################", tag)
 				MessageLog.printToLog("[COMBAT] Ending Combat Mode.", tag)
@@ -373,7 +379,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 		MessageLog.printToLog("[COMBAT] Turn $turnNumber has ended.", tag)
 
 		if (game.findAndClickButton("next", tries = 3, suppressError = true)) {
-			game.wait(3.0)
+			waitForNextWave()
 		}
 
 		turnNumber += 1
@@ -381,6 +387,15 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 		MessageLog.printToLog("[COMBAT] Starting Turn ${turnNumber}.", tag)
 	}
 
+	/**
+	 * Wait after tapping the "Next" button until the next wave is ready for the "Attack" button or the battle has ended.
+	 */
+	private fun waitForNextWave() {
+		game.waitUntil(timeout = 3.0) {
+			game.imageUtils.findButton("attack", tries = 1, suppressError = true) != null || game.imageUtils.classifyScreen(battleEndHeaders) != null
+		}
+	}
+
 	/**
 	 * Wait several tries until the bot sees either the "Attack" or the "Next" button before starting a new turn.
 	 *
@@ -394,15 +409,25 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 			100
 		}
 
-		while (tries > 0 && !retreatCheckFlag && game.imageUtils.findButton("attack", tries = 1, suppressError = true) == null &&
-			game.imageUtils.findButton("next", tries = 1, suppressError = true) == null
-		) {
-			checkForDialog()
+		while (tries > 0 && !retreatCheckFlag) {
+			// Each iteration is a single tick that shares one screenshot across all of its checks.
+			val attackEnded = game.imageUtils.withFrame {
+				if (game.imageUtils.findButton("attack", tries = 1, suppressError = true) != null || game.imageUtils.findButton("next", tries = 1, suppressError = true) != null) {
+					true
+				} else {
+					checkForDialog()
 
-			// Check if the Party wiped after attacking.
-			checkForWipe()
+					// Check if the Party wiped after attacking.
+					checkForWipe()
 
-			checkForBattleEnd()
+					checkForBattleEnd()
+					false
+				}
+			}
+
+			if (attackEnded) {
+				break
+			}
 
 			tries -= 1
 		}
@@ -489,7 +514,8 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 		MessageLog.printToLog("[COMBAT] Ending Turn ${turnNumber}...", tag)
 
 		if (fullAuto || semiAuto) {
-			while (game.imageUtils.findButton("attack") != null) {
+			// Each poll is its own tick so that the previous result is reused while the "Attack" button area stays unchanged.
+			while (game.imageUtils.withFrame { game.imageUtils.findButton("attack") } != null) {
 				game.wait(1.0)
 			}
 		} else {
@@ -511,7 +537,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 		checkForBattleEnd()
 
 		if (game.findAndClickButton("next", tries = 3, suppressError = true)) {
-			game.wait(3.0)
+			waitForNextWave()
 		}
 	}
 
@@ -1183,8 +1209,13 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 						if (okButtonLocation != null) {
 							game.gestureUtils.tap(okButtonLocation.x, okButtonLocation.y, "ok")
 
-							// Now wait for the Summon animation to complete.
-							game.wait(7.0)
+							// Now wait for the Summon animation to complete. The Attack button is hidden while it plays so wait for it to go away and then come back.
+							if (game.waitUntilButtonVanished("attack", timeout = 2.0)) {
+								game.waitUntilButtonVisible("attack", timeout = 5.0)
+							} else {
+								// The animation was not seen starting so wait out the rest of the 7 seconds that it takes instead of moving on while it plays.
+								game.wait(5.0)
+							}
 						} else {
 							MessageLog.printToLog("[COMBAT] Summon $j cannot be invoked due to current restrictions.", tag)
 							game.findAndClickButton("cancel")
@@ -1390,52 +1421,55 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 	private fun loopAuto() {
 		var sleepPreventionTimer = 0
 		while (!retreatCheckFlag && (fullAuto || semiAuto)) {
-			// Check for exit conditions.
-			checkForBattleEnd()
-
-			if (game.findAndClickButton("next", tries = 1, suppressError = true)) {
-				game.wait(3.0)
-			}
-
-			checkForWipe()
+			// Every check in this pass is a single tick that shares one screenshot and reuses the match results of repeated queries until the screen changes.
+			game.imageUtils.withFrame {
+				// Check for exit conditions.
+				checkForBattleEnd()
 
-			if (checkRaid()) {
-				// Click Next if it is available and enable automation again if combat continues.
 				if (game.findAndClickButton("next", tries = 1, suppressError = true)) {
-					game.wait(3.0)
+					waitForNextWave()
+				}
 
-					// Check for exit conditions and restart auto.
-					if (checkForBattleEnd() == "Nothing") {
-						enableAuto()
-					}
-				} else if (game.imageUtils.findButton("attack", tries = 1, suppressError = true) == null && game.imageUtils.findButton("next", tries = 1, suppressError = true) == null &&
-					checkForBattleEnd() == "Nothing"
-				) {
-					game.wait(1.0)
+				checkForWipe()
 
-					reloadAfterAttack(override = true)
-					waitForAttack()
+				if (checkRaid()) {
+					// Click Next if it is available and enable automation again if combat continues.
+					if (game.findAndClickButton("next", tries = 1, suppressError = true)) {
+						waitForNextWave()
 
-					// Check for exit conditions and restart auto.
-					if (checkForBattleEnd() == "Nothing") {
-						if (debugMode) {
-							MessageLog.printToLog("[DEBUG] Clicked the Next button to move to the next wave. Attempting to restart Full/Semi Auto...", tag)
+						// Check for exit conditions and restart auto.
+						if (checkForBattleEnd() == "Nothing") {
+							enableAuto()
 						}
+					} else if (game.imageUtils.findButton("attack", tries = 1, suppressError = true) == null && game.imageUtils.findButton("next", tries = 1, suppressError = true) == null &&
+						checkForBattleEnd() == "Nothing"
+					) {
+						game.wait(1.0)
+
+						reloadAfterAttack(override = true)
+						waitForAttack()
+
+						// Check for exit conditions and restart auto.
+						if (checkForBattleEnd() == "Nothing") {
+							if (debugMode) {
+								MessageLog.printToLog("[DEBUG] Clicked the Next button to move to the next wave. Attempting to restart Full/Semi Auto...", tag)
+							}
 
-						enableAuto()
+							enableAuto()
+						}
+					}
+				} else if (game.imageUtils.findButton("attack", tries = 1, suppressError = true) == null && game.imageUtils.findButton("next", tries = 1, suppressError = true) == null) {
+					if (debugMode) {
+						MessageLog.printToLog("[DEBUG] Attack and Next buttons have vanished. Determining if bot should reload...", tag)
 					}
-				}
-			} else if (game.imageUtils.findButton("attack", tries = 1, suppressError = true) == null && game.imageUtils.findButton("next", tries = 1, suppressError = true) == null) {
-				if (debugMode) {
-					MessageLog.printToLog("[DEBUG] Attack and Next buttons have vanished. Determining if bot should reload...", tag)
-				}
 
-				if (reloadAfterAttack()) {
-					// Enable Full/Semi Auto again if the bot reloaded.
-					if (fullAuto) {
-						enableFullAuto()
-					} else if (semiAuto) {
-						enableSemiAuto()
+					if (reloadAfterAttack()) {
+						// Enable Full/Semi Auto again if the bot reloaded.
+						if (fullAuto) {
+							enableFullAuto()
+						} else if (semiAuto) {
+							enableSemiAuto()
+						}
 					}
 				}
 			}
@@ -1463,7 +1497,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 			checkForBattleEnd()
 
 			if (game.findAndClickButton("next", tries = 1, suppressError = true)) {
-				game.wait(3.0)
+				waitForNextWave()
 
 				// Check for exit conditions.
 				checkForBattleEnd()
@@ -1679,7 +1713,7 @@ class CombatMode(private val game: Game, private val debugMode: Boolean = false)
 
 				// Counteract slower instances when the battle finished right when the bot finished executing the script.
 				if (game.findAndClickButton("next", tries = 1, suppressError = true)) {
-					game.wait(3.0)
+					waitForNextWave()
 					checkForBattleEnd()
 				}
 
@@ -14,6 +14,8 @@ import com.steve1316.granblue_automation_android.utils.*
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import org.opencv.core.Point
+import java.io.File
+import java.io.IOException
 import java.util.*
 import java.util.concurrent.TimeUnit
 
@@ -29,6 +31,9 @@ class Game(private val myContext: Context) {
 	private val startTime: Long = System.currentTimeMillis()
 	private var partySelectionFirstRun: Boolean = true
 
+	// Number of seconds to let the Home screen settle after its header shows up.
+	private val homeSettleDelay = 1.0
+
 	private lateinit var quest: Quest
 	private lateinit var special: Special
 	private lateinit var coop: Coop
@@ -44,8 +49,11 @@ class Game(private val myContext: Context) {
 	private lateinit var generic: Generic
 
 	val configData: ConfigData = ConfigData(myContext)
+
+	// Loaded before anything else touches the screen so that the scale, regions and anchors learned on previous runs are available right away.
+	val deviceProfile: DeviceProfile = DeviceProfile(File(myContext.getExternalFilesDir(null), "device_profile.json"), SharedData.displayWidth, SharedData.displayHeight, SharedData.displayDPI)
 	val imageUtils: CustomImageUtils = CustomImageUtils(myContext, this)
-	lateinit var gestureUtils: MyAccessibilityService
+	lateinit var gestureUtils: GestureDriver
 	var twitterRoomFinder: TwitterRoomFinder = TwitterRoomFinder(myContext, configData)
 	val combatMode: CombatMode = CombatMode(this, configData.debugMode)
 
@@ -97,7 +105,7 @@ class Game(private val myContext: Context) {
 	 * Go back to the Home screen by tapping the "Home" button.
 	 *
 	 * @param confirmLocationCheck Whether or not the bot should confirm that it has arrived at the Home screen.
-	 * @param testMode Flag to test and get a valid scale for device compatibility.
+	 * @param testMode Flag to calibrate a valid scale for device compatibility if the Home button could not be found.
 	 */
 	fun goBackHome(confirmLocationCheck: Boolean = false, testMode: Boolean = false) {
 		if (!imageUtils.confirmLocation("home", bypassGeneralAdjustment = true)) {
@@ -107,14 +115,16 @@ class Game(private val myContext: Context) {
 				if (!testMode) {
 					throw Exception("HOME button is not found. Stopping bot to prevent cascade of errors. Please readjust your confidences/scales.")
 				} else {
-					MessageLog.printToLog("\n[DEBUG] Failed to find the HOME button. Now beginning test to find a valid scale for this device...", tag)
-					imageUtils.findButton("home", testMode = true)
+					MessageLog.printToLog("\n[DEBUG] Failed to find the HOME button. Now calibrating a valid scale for this device...", tag)
+					imageUtils.calibrateScale()
 					return
 				}
 			}
 
-			// Wait a few seconds for the page to load and to prevent the bot from prematurely scrolling all the way to the bottom.
-			wait(4.0)
+			// Wait for the page to load to prevent the bot from prematurely scrolling all the way to the bottom. The header shows up before the rest of the page
+			// has finished loading so give it a moment to settle afterwards, even if the header was not seen in time as the page may still be on its way.
+			waitUntilLocation("home", timeout = 4.0)
+			wait(homeSettleDelay)
 
 			MessageLog.printToLog("\n[INFO] Screen Width: ${SharedData.displayWidth}, Screen Height: ${SharedData.displayHeight}, Screen DPI: ${SharedData.displayDPI}", tag)
 
@@ -126,7 +136,8 @@ class Game(private val myContext: Context) {
 
 				if (!imageUtils.confirmLocation("home", bypassGeneralAdjustment = true)) {
 					findAndClickButton("reload")
-					wait(4.0)
+					waitUntilLocation("home", timeout = 4.0)
+					wait(homeSettleDelay)
 					if (!imageUtils.confirmLocation("home", bypassGeneralAdjustment = true)) {
 						throw Exception("Failed to head back to the Home screen after clicking on the Home button.")
 					}
@@ -143,6 +154,9 @@ class Game(private val myContext: Context) {
 	 * @param seconds umber of seconds for the execution to wait for. Defaults to 3.0.
 	 */
 	fun wait(seconds: Double = 3.0) {
+		// The screen is expected to change while waiting so any frame being shared by the current tick is now stale.
+		imageUtils.invalidateFrame()
+
 		if (configData.reduceDelaySeconds > 0.0) {
 			if (seconds - configData.reduceDelaySeconds < 0.0) {
 				runBlocking {
@@ -161,152 +175,143 @@ class Game(private val myContext: Context) {
 	}
 
 	/**
-	 * Find and click button
+	 * Wait until the condition is met or the timeout runs out, whichever comes first. Each check of the condition is a single tick that shares one screenshot.
 	 *
-	 * @param buttonName Name of the button image file in the /assets/buttons/ folder.
-	 * @param tries Number of tries to find the specified button. Defaults to 0 which will use ImageUtil's default.
-	 * @param customConfidence Use a custom confidence for the template matching. Defaults to the device default.
-	 * @param suppressError Whether or not to suppress saving error messages to the log in failing to find the button.
-	 * @param bypassGeneralAdjustment Bypass using the general adjustment for the number of tries. Defaults to True.
-	 * @return True if the button was found and clicked. False otherwise.
+	 * @param timeout Maximum number of seconds to wait for. This should be the worst-case time that a fixed wait would have used.
+	 * @param pollInterval Number of seconds to wait between each check of the condition. Defaults to 0.25.
+	 * @param condition Returns true once the screen is ready.
+	 * @return True if the condition was met. False if the timeout ran out first.
 	 */
-	fun findAndClickButton(buttonName: String, tries: Int = 0, customConfidence: Double = configData.confidence, suppressError: Boolean = false, bypassGeneralAdjustment: Boolean = true): Boolean {
-		if (configData.debugMode) {
-			MessageLog.printToLog("[DEBUG] Now attempting to find and click the \"$buttonName\" button.", tag)
-		}
-
-		var tempLocation: Point?
-		var newButtonName = buttonName
+	fun waitUntil(timeout: Double, pollInterval: Double = 0.25, condition: () -> Boolean): Boolean {
+		val startTime = System.nanoTime()
+		val deadline = startTime + (timeout * 1_000_000_000L).toLong()
 
-		if (tries == 0) {
-			if (buttonName.lowercase() == "quest") {
-				tempLocation = imageUtils.findButton("quest_blue", customConfidence = customConfidence, suppressError = suppressError)
-				newButtonName = "quest_blue"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("quest_red", customConfidence = customConfidence, suppressError = suppressError)
-					newButtonName = "quest_red"
-				}
-
-			} else if (buttonName.lowercase() == "raid") {
-				tempLocation = imageUtils.findButton("raid_flat", customConfidence = customConfidence, suppressError = suppressError)
-				newButtonName = "raid_flat"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("raid_bouncing", customConfidence = customConfidence, suppressError = suppressError)
-					newButtonName = "raid_bouncing"
+		while (true) {
+			if (imageUtils.withFrame { condition() }) {
+				if (configData.debugMode) {
+					MessageLog.printToLog("[DEBUG] Condition was met after ${(System.nanoTime() - startTime) / 1_000_000L}ms out of ${(timeout * 1000).toLong()}ms.", tag)
 				}
 
-			} else if (buttonName.lowercase() == "coop_start") {
-				tempLocation = imageUtils.findButton("coop_start_flat", customConfidence = customConfidence, suppressError = suppressError)
-				newButtonName = "coop_start_flat"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("coop_start_faded", customConfidence = customConfidence, suppressError = suppressError)
-					newButtonName = "coop_start_faded"
-				}
+				return true
+			}
 
-			} else if (buttonName.lowercase() == "event_special_quest") {
-				tempLocation = imageUtils.findButton("event_special_quest_flat", customConfidence = customConfidence, suppressError = suppressError)
-				newButtonName = "event_special_quest_flat"
+			val remainingMilliseconds = (deadline - System.nanoTime()) / 1_000_000L
+			if (remainingMilliseconds <= 0) {
+				break
+			}
 
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("event_special_quest_bouncing", customConfidence = customConfidence, suppressError = suppressError)
-					newButtonName = "event_special_quest_bouncing"
-				}
+			runBlocking {
+				delay(minOf((pollInterval * 1000).toLong(), remainingMilliseconds))
+			}
+		}
 
-			} else if (buttonName.lowercase() == "world") {
-				tempLocation = imageUtils.findButton("world", customConfidence = customConfidence, suppressError = suppressError)
-				newButtonName = "world"
+		if (configData.debugMode) {
+			MessageLog.printToLog("[DEBUG] Condition was not met within ${(timeout * 1000).toLong()}ms. Continuing on anyways...", tag)
+		}
 
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("world2", customConfidence = customConfidence, suppressError = suppressError)
-					newButtonName = "world2"
-				}
-			} else {
-				tempLocation = imageUtils.findButton(buttonName, customConfidence = customConfidence, suppressError = suppressError)
-			}
-		} else {
-			if (buttonName.lowercase() == "quest") {
-				tempLocation = imageUtils.findButton("quest_blue", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
-				newButtonName = "quest_blue"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton(
-						"quest_red", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-						bypassGeneralAdjustment
-					)
-					newButtonName = "quest_red"
-				}
+		return false
+	}
 
-			} else if (buttonName.lowercase() == "raid") {
-				tempLocation = imageUtils.findButton("raid_flat", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
-				newButtonName = "raid_flat"
+	/**
+	 * Wait until the specified button appears on the screen.
+	 *
+	 * @param buttonName Name of the button image file in the /assets/buttons/ folder.
+	 * @param timeout Maximum number of seconds to wait for.
+	 * @param pollInterval Number of seconds to wait between each check. Defaults to 0.25.
+	 * @return True if the button appeared. False if the timeout ran out first.
+	 */
+	fun waitUntilButtonVisible(buttonName: String, timeout: Double, pollInterval: Double = 0.25): Boolean {
+		return waitUntil(timeout, pollInterval) { imageUtils.findButton(buttonName, tries = 1, suppressError = true, disableAdjustment = true) != null }
+	}
 
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton(
-						"raid_bouncing", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-						bypassGeneralAdjustment
-					)
-					newButtonName = "raid_bouncing"
-				}
+	/**
+	 * Wait until the specified button disappears from the screen.
+	 *
+	 * @param buttonName Name of the button image file in the /assets/buttons/ folder.
+	 * @param timeout Maximum number of seconds to wait for.
+	 * @param pollInterval Number of seconds to wait between each check. Defaults to 0.25.
+	 * @return True if the button vanished. False if the timeout ran out first.
+	 */
+	fun waitUntilButtonVanished(buttonName: String, timeout: Double, pollInterval: Double = 0.25): Boolean {
+		return waitUntil(timeout, pollInterval) { imageUtils.findButton(buttonName, tries = 1, suppressError = true, disableAdjustment = true) == null }
+	}
 
-			} else if (buttonName.lowercase() == "coop_start") {
-				tempLocation = imageUtils.findButton(
-					"coop_start_flat", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-					bypassGeneralAdjustment
-				)
-				newButtonName = "coop_start_flat"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton(
-						"coop_start_faded", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-						bypassGeneralAdjustment
-					)
-					newButtonName = "coop_start_faded"
-				}
+	/**
+	 * Wait until the bot arrives at the specified location.
+	 *
+	 * @param headerName Name of the header image file in the /assets/headers/ folder without the "_header" suffix.
+	 * @param timeout Maximum number of seconds to wait for.
+	 * @param pollInterval Number of seconds to wait between each check. Defaults to 0.25.
+	 * @return True if the bot arrived at the location. False if the timeout ran out first.
+	 */
+	fun waitUntilLocation(headerName: String, timeout: Double, pollInterval: Double = 0.25): Boolean {
+		return waitUntil(timeout, pollInterval) { imageUtils.confirmLocation(headerName, tries = 1, suppressError = true, disableAdjustment = true) }
+	}
 
-			} else if (buttonName.lowercase() == "event_special_quest") {
-				tempLocation = imageUtils.findButton(
-					"event_special_quest_flat", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-					bypassGeneralAdjustment
-				)
-				newButtonName = "event_special_quest_flat"
-
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton(
-						"event_special_quest_bouncing", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment =
-						bypassGeneralAdjustment
-					)
-					newButtonName = "event_special_quest_bouncing"
-				}
+	/**
+	 * Wait until the screen classifier determines that the game is on one of the specified screens.
+	 *
+	 * @param headerNames Names of the header image files in the /assets/headers/ folder without the "_header" suffix.
+	 * @param timeout Maximum number of seconds to wait for.
+	 * @param pollInterval Number of seconds to wait between each check. Defaults to 0.25.
+	 * @return Name of the screen or null if the timeout ran out first.
+	 */
+	fun waitUntilScreen(headerNames: List<String>, timeout: Double, pollInterval: Double = 0.25): String? {
+		var screen: String? = null
+		waitUntil(timeout, pollInterval) {
+			screen = imageUtils.classifyScreen(headerNames)?.screen
+			screen != null
+		}
 
-			} else if (buttonName.lowercase() == "world") {
-				tempLocation = imageUtils.findButton("world", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
-				newButtonName = "world"
+		return screen
+	}
 
-				if (tempLocation == null) {
-					tempLocation = imageUtils.findButton("world2", tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
-					newButtonName = "world2"
-				}
-			} else {
-				tempLocation = imageUtils.findButton(buttonName, tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
-			}
+	/**
+	 * Find and click button
+	 *
+	 * @param buttonName Name of the button image file in the /assets/buttons/ folder.
+	 * @param tries Number of tries to find the specified button. Defaults to 0 which will use ImageUtil's default.
+	 * @param customConfidence Use a custom confidence for the template matching. Defaults to the device default.
+	 * @param suppressError Whether or not to suppress saving error messages to the log in failing to find the button.
+	 * @param bypassGeneralAdjustment Bypass using the general adjustment for the number of tries. Defaults to True.
+	 * @return True if the button was found and clicked. False otherwise.
+	 */
+	fun findAndClickButton(buttonName: String, tries: Int = 0, customConfidence: Double = configData.confidence, suppressError: Boolean = false, bypassGeneralAdjustment: Boolean = true): Boolean {
+		if (configData.debugMode) {
+			MessageLog.printToLog("[DEBUG] Now attempting to find and click the \"$buttonName\" button.", tag)
 		}
 
-		return if (tempLocation != null) {
-			if (configData.enableDelayTap) {
-				val newDelay: Double = ((configData.delayTapMilliseconds - 100)..(configData.delayTapMilliseconds + 100)).random().toDouble() / 1000
-				if (configData.debugMode) MessageLog.printToLog("[DEBUG] Adding an additional delay of ${newDelay}s...", tag)
-				wait(newDelay)
-			}
+		// Buttons with variants such as "quest" have all of their templates matched against each screenshot.
+		val result = if (tries == 0) {
+			imageUtils.findButtonVariant(buttonName, customConfidence = customConfidence, suppressError = suppressError)
+		} else {
+			imageUtils.findButtonVariant(buttonName, tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
+		}
 
-			gestureUtils.tap(tempLocation.x, tempLocation.y, newButtonName)
+		return if (result != null) {
+			tapButton(result.second, result.first)
 		} else {
 			false
 		}
 	}
 
+	/**
+	 * Tap the button at the specified location, adding the additional delay before the tap if the user enabled it.
+	 *
+	 * @param location Location of the button.
+	 * @param buttonName Name of the button image file in the /assets/buttons/ folder.
+	 * @return True if the tap was dispatched. False otherwise.
+	 */
+	fun tapButton(location: Point, buttonName: String): Boolean {
+		if (configData.enableDelayTap) {
+			val newDelay: Double = ((configData.delayTapMilliseconds - 100)..(configData.delayTapMilliseconds + 100)).random().toDouble() / 1000
+			if (configData.debugMode) MessageLog.printToLog("[DEBUG] Adding an additional delay of ${newDelay}s...", tag)
+			wait(newDelay)
+		}
+
+		return gestureUtils.tap(location.x, location.y, buttonName)
+	}
+
 	/**
 	 * Checks for CAPTCHA right after selecting a Summon. If detected, alert the user and stop the bot.
 	 */
@@ -715,18 +720,27 @@ class Game(private val myContext: Context) {
 		// Close all popups until the bot reaches the Loot Collected screen.
 		if (!skipPopupCheck) {
 			var lootCollectionTries = 30
-			while (!imageUtils.confirmLocation("loot_collected", tries = 1, disableAdjustment = true)) {
+			while (true) {
+				// Match the popup buttons and the destination headers against a single screenshot per iteration.
+				val results = imageUtils.findAny(listOf("ok", "close", "cancel", "new_extended_mastery_level"), headerNames = listOf("loot_collected", "no_loot"))
+				if (results.any { it.templateName == "loot_collected" }) {
+					break
+				}
+
 				lootCollectionTries -= 1
 				if (lootCollectionTries <= 0) {
 					throw Exception("Unable to progress in the Loot Collection process.")
 				}
 
-				findAndClickButton("ok", tries = 1, suppressError = true)
-				findAndClickButton("close", tries = 1, suppressError = true)
-				findAndClickButton("cancel", tries = 1, suppressError = true)
-				findAndClickButton("new_extended_mastery_level", tries = 1, suppressError = true)
+				// Dismiss the most confident popup button and check again on a fresh screenshot as the rest of this one is stale after the tap.
+				// Stacked popups are dismissed one after another this way before deciding whether there was no loot.
+				val popup = results.firstOrNull { it.templateName != "no_loot" }
+				if (popup != null) {
+					tapButton(popup.location, popup.templateName)
+					continue
+				}
 
-				if (imageUtils.confirmLocation("no_loot", tries = 1, suppressError = true, disableAdjustment = true)) {
+				if (results.any { it.templateName == "no_loot" }) {
 					return
 				}
 
@@ -859,16 +873,40 @@ class Game(private val myContext: Context) {
 	fun checkForPopups(): Boolean {
 		MessageLog.printToLog("\n[INFO] Now beginning process to check for popups...", tag)
 
+		val popupButtons = listOf("close", "cancel", "bottom_of_summon_selection")
+		val popupHeaders = arrayListOf("select_a_summon")
+		if (configData.farmingMode == "Rise of the Beasts") {
+			popupHeaders.add("rotb_proud_solo_quest")
+		}
+		if (configData.farmingMode == "Event (Token Drawboxes)" || configData.farmingMode == "Guild Wars") {
+			popupHeaders.add("not_enough_treasure")
+		}
+
 		var checkPopupTries = 30
-		while (!imageUtils.confirmLocation("select_a_summon", tries = 1, suppressError = true)) {
+		while (true) {
+			// Classify the screen and match the popup buttons against a single screenshot per iteration.
+			var screen: String? = null
+			var results = arrayListOf<TemplateMatcher.MatchResult>()
+			imageUtils.withFrame {
+				screen = imageUtils.classifyScreen(popupHeaders)?.screen
+				results = imageUtils.findAny(popupButtons)
+			}
+
+			if (screen == "select_a_summon") {
+				break
+			}
+
 			checkPopupTries -= 1
 			if (checkPopupTries <= 0) {
 				throw Exception("Failed to progress in the Check for Popups process...")
 			}
 
-			if (configData.farmingMode == "Rise of the Beasts" && imageUtils.confirmLocation("rotb_proud_solo_quest", tries = 1)) {
+			if (screen == "rotb_proud_solo_quest") {
 				// Scroll down the screen a little bit because the popup itself is too long.
 				gestureUtils.scroll()
+
+				// The locations of the buttons have moved so take a new screenshot.
+				results = imageUtils.findAny(popupButtons)
 			}
 
 			// Check for certain popups for certain Farming Modes.
@@ -881,17 +919,22 @@ class Game(private val myContext: Context) {
 			}
 
 			// If the bot tried to repeat a Extreme/Impossible difficulty Event Raid and it lacked the treasures to host it, go back to the Mission again.
-			if ((configData.farmingMode == "Event (Token Drawboxes)" || configData.farmingMode == "Guild Wars") && imageUtils.confirmLocation("not_enough_treasure", tries = 1)) {
+			if (screen == "not_enough_treasure") {
 				findAndClickButton("ok")
 				return true
 			}
 
 			// Attempt to close the popup by clicking on any detected "Close" and "Cancel" buttons.
-			if (!findAndClickButton("close", tries = 1, suppressError = true)) {
-				findAndClickButton("cancel", tries = 1, suppressError = true)
+			val closeOrCancel = results.firstOrNull { it.templateName == "close" } ?: results.firstOrNull { it.templateName == "cancel" }
+			// Closing a popup reveals what was underneath so the matches from before the tap can no longer be trusted for the check below.
+			val isBottomOfSummonSelection = if (closeOrCancel != null) {
+				tapButton(closeOrCancel.location, closeOrCancel.templateName)
+				imageUtils.findButton("bottom_of_summon_selection", tries = 1, suppressError = true) != null
+			} else {
+				results.any { it.templateName == "bottom_of_summon_selection" }
 			}
 
-			if (imageUtils.findButton("bottom_of_summon_selection", tries = 1, suppressError = true) != null) {
+			if (isBottomOfSummonSelection) {
 				MessageLog.printToLog("[INFO] Detected bottom of Summon Selection screen. Reloading now to continue with process to check for popups...", tag)
 				findAndClickButton("reload")
 			}
@@ -1052,13 +1095,20 @@ class Game(private val myContext: Context) {
 
 		// Double check if the AccessibilityService is alive or not. Do not continue if it is dead.
 		gestureUtils = if (MyAccessibilityService.checkStatus(myContext)) {
-			MyAccessibilityService.getInstance()
+			GestureDriver.Accessibility(MyAccessibilityService.getInstance())
 		} else {
 			throw UninitializedPropertyAccessException(
 				"Accessibility Service appears to be dead. Restart it by turning it on and off in the Accessibility Settings until you see a success popup and try again."
 			)
 		}
 
+		imageUtils.sessionRecorder?.let { recorder ->
+			gestureUtils = GestureDriver.Recorded(gestureUtils, recorder)
+		}
+
+		// Every gesture changes the screen so any frame being shared by the current tick is stale afterwards.
+		gestureUtils = GestureDriver.Invalidating(gestureUtils) { imageUtils.invalidateFrame() }
+
 		// Set the subfolder to the buttons subfolder for tap location randomization.
 		MyAccessibilityService.imageSubFolder = "buttons/"
 
@@ -1082,54 +1132,73 @@ class Game(private val myContext: Context) {
 			twitterRoomFinder.connect()
 		}
 
-		var firstRun = true
-		while (itemAmountFarmed < configData.itemAmount) {
-			when (configData.farmingMode) {
-				"Quest" -> {
-					quest.start(firstRun)
-				}
-				"Special" -> {
-					special.start(firstRun)
-				}
-				"Coop" -> {
-					coop.start(firstRun)
-				}
-				"Raid" -> {
-					raid.start()
-				}
-				"Event", "Event (Token Drawboxes)" -> {
-					event.start(firstRun)
-				}
-				"Rise of the Beasts" -> {
-					riseOfTheBeasts.start(firstRun)
-				}
-				"Guild Wars" -> {
-					guildWars.start(firstRun)
-				}
-				"Dread Barrage" -> {
-					dreadBarrage.start(firstRun)
-				}
-				"Proving Grounds" -> {
-					provingGrounds.start(firstRun)
-				}
-				"Xeno Clash" -> {
-					xenoClash.start(firstRun)
-				}
-				"Arcarum" -> {
-					arcarum.start()
-				}
-				"Arcarum Sandbox" -> {
-					arcarumSandbox.start()
+		try {
+			var firstRun = true
+			while (itemAmountFarmed < configData.itemAmount) {
+				when (configData.farmingMode) {
+					"Quest" -> {
+						quest.start(firstRun)
+					}
+					"Special" -> {
+						special.start(firstRun)
+					}
+					"Coop" -> {
+						coop.start(firstRun)
+					}
+					"Raid" -> {
+						raid.start()
+					}
+					"Event", "Event (Token Drawboxes)" -> {
+						event.start(firstRun)
+					}
+					"Rise of the Beasts" -> {
+						riseOfTheBeasts.start(firstRun)
+					}
+					"Guild Wars" -> {
+						guildWars.start(firstRun)
+					}
+					"Dread Barrage" -> {
+						dreadBarrage.start(firstRun)
+					}
+					"Proving Grounds" -> {
+						provingGrounds.start(firstRun)
+					}
+					"Xeno Clash" -> {
+						xenoClash.start(firstRun)
+					}
+					"Arcarum" -> {
+						arcarum.start()
+					}
+					"Arcarum Sandbox" -> {
+						arcarumSandbox.start()
+					}
+					"Generic" -> {
+						generic.start()
+					}
 				}
-				"Generic" -> {
-					generic.start()
+
+				if (itemAmountFarmed < configData.itemAmount) {
+					// Generate a resting period if the user enabled it.
+					delayBetweenRuns()
+					firstRun = false
 				}
 			}
+		} finally {
+			// Keep whatever was learned about the screen, the recorded session and the match metrics even if the run ended with an Exception or was stopped.
+			deviceProfile.save()
+
+			imageUtils.sessionRecorder?.let { recorder ->
+				recorder.close()
+				MessageLog.printToLog("[INFO] Session recording: $recorder", tag)
+			}
 
-			if (itemAmountFarmed < configData.itemAmount) {
-				// Generate a resting period if the user enabled it.
-				delayBetweenRuns()
-				firstRun = false
+			// Export every metric for further analysis regardless of debug mode so that the numbers of normal and failed runs can be compared as well.
+			val metricsFile = File(myContext.getExternalFilesDir(null), "match_metrics.csv")
+			try {
+				imageUtils.matchMetrics.exportCsv(metricsFile)
+				MessageLog.printToLog("[INFO] Exported match metrics to ${metricsFile.absolutePath}", tag)
+			} catch (e: IOException) {
+				MessageLog.printToLog("[WARNING] Failed to export match metrics: ${e.message}", tag, isWarning = true)
 			}
 		}
 
@@ -1141,6 +1210,19 @@ class Game(private val myContext: Context) {
 
 		MessageLog.printToLog("\nTotal Runtime: ${System.currentTimeMillis() - startTime}ms", tag)
 
+		if (configData.debugMode) {
+			MessageLog.printToLog("[DEBUG] Template cache: ${imageUtils.templateCache}", tag)
+			MessageLog.printToLog("[DEBUG] Template bundle: ${imageUtils.templateBundle}", tag)
+			MessageLog.printToLog("[DEBUG] Template registry: ${imageUtils.templateRegistry}", tag)
+			MessageLog.printToLog("[DEBUG] Mat pool: ${imageUtils.matPool}", tag)
+			MessageLog.printToLog("[DEBUG] Device profile: $deviceProfile", tag)
+			MessageLog.printToLog("[DEBUG] Region index: ${imageUtils.roiIndex}", tag)
+			MessageLog.printToLog("[DEBUG] Scale calibration: ${imageUtils.scaleCalibrator}", tag)
+			MessageLog.printToLog("[DEBUG] Item amount reader: ${imageUtils.itemAmountReader}", tag)
+			MessageLog.printToLog("[DEBUG] Retry policy: ${imageUtils.retryPolicy}", tag)
+			MessageLog.printToLog("[DEBUG] Match metrics:\n${imageUtils.matchMetrics.summary()}", tag)
+		}
+
 		return true
 	}
 }
\ No newline at end of file
@@ -82,7 +82,9 @@ class Arcarum(private val game: Game, private val mapName: String) {
 		} else if (game.imageUtils.confirmLocation("arcarum_departure_check")) {
 			MessageLog.printToLog("[ARCARUM] Now using 1 Arcarum ticket to start this expedition...", tag)
 			val resultCheck = game.findAndClickButton("start_expedition")
-			game.wait(6.0)
+
+			// Wait for the map of the expedition to finish loading in.
+			game.waitUntil(timeout = 6.0) { game.imageUtils.findAny(listOf("arcarum_action", "arcarum_boss", "arcarum_boss2", "arcarum_next_stage")).isNotEmpty() }
 			return resultCheck
 		} else if (game.findAndClickButton("resume")) {
 			game.wait(3.0)
@@ -32,7 +32,7 @@ class Coop(private val game: Game, private val missionName: String) {
 		game.wait(1.0)
 		game.findAndClickButton("coop")
 
-		game.wait(3.0)
+		game.waitUntilLocation("coop", timeout = 3.0)
 
 		if (game.imageUtils.confirmLocation("coop")) {
 			// Scroll the screen down a little bit.
@@ -35,7 +35,7 @@ class DreadBarrage(private val game: Game, private val missionName: String) {
 			}
 		}
 
-		game.wait(3.0)
+		game.waitUntilLocation("dread_barrage", timeout = 3.0)
 
 		if (game.imageUtils.confirmLocation("dread_barrage")) {
 			// Check if there is already a hosted Dread Barrage mission.
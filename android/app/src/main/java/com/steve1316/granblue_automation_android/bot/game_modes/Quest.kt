@@ -402,10 +402,7 @@ class Quest(private val game: Game, private val mapName: String, private val mis
 	 */
 	private fun selectPhantagrandeChapterNode() {
 		// Grab the location of the "World" button.
-		var worldButtonLocation = game.imageUtils.findButton("world", tries = 30)
-		if (worldButtonLocation == null) {
-			worldButtonLocation = game.imageUtils.findButton("world2", tries = 30)!!
-		}
+		val worldButtonLocation = game.imageUtils.findButtonVariant("world", tries = 30)!!.second
 
 		if (missionName == "Scattered Cargo") {
 			MessageLog.printToLog("\n[QUEST] Moving to Chapter 1 (115) node...", tag)
@@ -553,10 +550,7 @@ class Quest(private val game: Game, private val mapName: String, private val mis
 	 */
 	private fun selectNalhegrandeChapterNode() {
 		// Grab the location of the "World" button.
-		var worldButtonLocation = game.imageUtils.findButton("world", tries = 30)
-		if (worldButtonLocation == null) {
-			worldButtonLocation = game.imageUtils.findButton("world2", tries = 30)!!
-		}
+		val worldButtonLocation = game.imageUtils.findButtonVariant("world", tries = 30)!!.second
 
 		when (missionName) {
 			"Stocking Up for Winter" -> {
@@ -613,10 +607,7 @@ class Quest(private val game: Game, private val mapName: String, private val mis
 	 */
 	private fun selectOarlyegrandeChapterNode() {
 		// Grab the location of the "World" button.
-		var worldButtonLocation = game.imageUtils.findButton("world", tries = 30)
-		if (worldButtonLocation == null) {
-			worldButtonLocation = game.imageUtils.findButton("world2", tries = 30)!!
-		}
+		val worldButtonLocation = game.imageUtils.findButtonVariant("world", tries = 30)!!.second
 
 		if (missionName == "House of Happiness") {
 			MessageLog.printToLog("\n[QUEST] Moving to Chapter 132 node...", tag)
@@ -89,7 +89,7 @@ class ROTB(private val game: Game, private val missionName: String) {
 			game.gestureUtils.tap(bannerLocations[game.configData.rotbNewPosition].x, bannerLocations[game.configData.rotbNewPosition].y, "event_banner")
 		} else game.gestureUtils.tap(bannerLocations[0].x, bannerLocations[0].y, "event_banner")
 
-		game.wait(3.0)
+		game.waitUntilLocation("rotb", timeout = 3.0)
 
 		if (game.imageUtils.confirmLocation("rotb")) {
 			// Remove the difficulty prefix from the mission name.
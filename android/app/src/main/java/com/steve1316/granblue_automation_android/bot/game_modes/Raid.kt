@@ -51,10 +51,10 @@ class Raid(private val game: Game) {
 		var tries = 10
 		var joinSuccessful = false
 
-		// Save the locations of the "Join Room" button and the "Room Code" text box.
+		// Save the locations of the "Join Room" button and the "Room Code" text box, checking the location from a previous run on this device first if there is one.
 		if (firstInitialization) {
 			game.wait(2.0)
-			joinRoomButtonLocation = game.imageUtils.findButton("join_a_room")!!
+			joinRoomButtonLocation = game.imageUtils.findAnchoredButton("join_a_room") ?: throw Exception("Failed to find the Join Room button.")
 			roomCodeTextBoxLocation = if (!game.imageUtils.isTablet) {
 				if (game.imageUtils.is720p) {
 					Point(joinRoomButtonLocation.x - 200.0, joinRoomButtonLocation.y)
@@ -166,7 +166,7 @@ class Raid(private val game: Game) {
 		// Now go to the Backup Requests screen.
 		game.findAndClickButton("raid")
 
-		game.wait(3.0)
+		game.waitUntilLocation("raid", timeout = 3.0)
 
 		if (game.imageUtils.confirmLocation("raid")) {
 			// Check for any joined Raids.
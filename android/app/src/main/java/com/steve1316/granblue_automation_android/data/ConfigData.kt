@@ -137,6 +137,11 @@ class ConfigData(myContext: Context) {
 	val confidenceAll: Double
 	val customScale: Double
 	val enableTestForHomeScreen: Boolean
+	val enablePyramidMatching: Boolean
+	val enableBackgroundCapture: Boolean
+	val enableAdaptiveRetry: Boolean
+	val enableOfflineDigitRecognition: Boolean
+	val enableSessionRecording: Boolean
 
 	init {
 		Log.d(tag, "Loading settings from SharedPreferences to memory...")
@@ -294,6 +299,11 @@ class ConfigData(myContext: Context) {
 		confidenceAll = sharedPreferences.getFloat("confidenceAll", 0.8f).toDouble() / 100.0
 		customScale = sharedPreferences.getFloat("customScale", 1.0f).toDouble()
 		enableTestForHomeScreen = sharedPreferences.getBoolean("enableTestForHomeScreen", false)
+		enablePyramidMatching = sharedPreferences.getBoolean("enablePyramidMatching", false)
+		enableBackgroundCapture = sharedPreferences.getBoolean("enableBackgroundCapture", false)
+		enableAdaptiveRetry = sharedPreferences.getBoolean("enableAdaptiveRetry", false)
+		enableOfflineDigitRecognition = sharedPreferences.getBoolean("enableOfflineDigitRecognition", false)
+		enableSessionRecording = sharedPreferences.getBoolean("enableSessionRecording", false)
 
 		Log.d(tag, "Successfully loaded settings from SharedPreferences to memory.")
 	}
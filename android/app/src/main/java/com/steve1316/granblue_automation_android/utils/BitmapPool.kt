@@ -0,0 +1,67 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.graphics.Bitmap
+
+/**
+ * Pool of mutable Bitmaps of the same size used for cropping small regions out of screenshots without allocating a new Bitmap for every crop.
+ *
+ * @param width Width of every Bitmap in the pool.
+ * @param height Height of every Bitmap in the pool.
+ * @param maxPooled Maximum number of idle Bitmaps to hold onto. Defaults to 16.
+ */
+class BitmapPool(private val width: Int, private val height: Int, private val maxPooled: Int = 16) {
+	private val idleBitmaps = ArrayDeque<Bitmap>()
+
+	// Reused to hold the pixels while copying them over to a crop.
+	private val pixels = IntArray(width * height)
+
+	var allocations: Long = 0L
+		private set
+	var reuses: Long = 0L
+		private set
+
+	/**
+	 * Copy the region of the source Bitmap starting at the specified coordinates into a pooled Bitmap.
+	 *
+	 * @param sourceBitmap The Bitmap to crop.
+	 * @param x X coordinate of the top left corner of the crop.
+	 * @param y Y coordinate of the top left corner of the crop.
+	 * @return The cropped Bitmap. It should be given back with recycle() once it is no longer needed.
+	 */
+	@Synchronized
+	fun crop(sourceBitmap: Bitmap, x: Int, y: Int): Bitmap {
+		val bitmap = if (idleBitmaps.isNotEmpty()) {
+			reuses += 1
+			idleBitmaps.removeFirst()
+		} else {
+			allocations += 1
+			Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+		}
+
+		sourceBitmap.getPixels(pixels, 0, width, x, y, width, height)
+		bitmap.setPixels(pixels, 0, width, 0, 0, width, height)
+		return bitmap
+	}
+
+	/**
+	 * Give the Bitmap back to the pool. It is recycled instead if the pool is full.
+	 *
+	 * @param bitmap The Bitmap from crop().
+	 */
+	@Synchronized
+	fun recycle(bitmap: Bitmap) {
+		if (bitmap.isRecycled || idleBitmaps.any { it === bitmap }) {
+			return
+		}
+
+		if (idleBitmaps.size >= maxPooled) {
+			bitmap.recycle()
+		} else {
+			idleBitmaps.addLast(bitmap)
+		}
+	}
+
+	override fun toString(): String {
+		return "${idleBitmaps.size} idle ${width}x$height Bitmaps with $allocations allocations and $reuses reuses"
+	}
+}
@@ -0,0 +1,140 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.graphics.Bitmap
+import org.opencv.android.Utils
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+
+/**
+ * Remembers the amounts read from recent crops by a perceptual hash of the binarized crop so that the same badges seen run after run are not read again.
+ *
+ * Only crops with exactly the same hash count as the same crop as badges such as "x2" and "x3" can differ by only a handful of bits once binarized.
+ * A remembered amount is only trusted once the reader behind it has returned the same amount for that crop several times and never a different one,
+ * and every so often a trusted crop is read again anyway so that a wrong amount does not keep getting served.
+ *
+ * @param delegate Reads the crops that cannot be answered from memory.
+ * @param maxEntries Number of crops to remember before the least recently used one is forgotten. Defaults to 64.
+ * @param minConfirmations Number of times the same amount has to be read for a crop before it is trusted. Defaults to 2.
+ * @param verifyInterval Every this many times a trusted crop is answered from memory, it is read again instead to verify it. Defaults to 10.
+ */
+class CachingItemAmountReader(
+	private val delegate: ItemAmountReader, private val maxEntries: Int = 64, private val minConfirmations: Int = 2, private val verifyInterval: Int = 10
+) : ItemAmountReader {
+	private class CachedAmount(val amount: Int, var confirmations: Int = 1, var conflicted: Boolean = false, var servedSinceVerify: Int = 0)
+
+	// Pixels brighter than this count as part of the amount.
+	private val binaryThreshold = 130.0
+
+	// Width and height of the binarized thumbnail that gets hashed.
+	private val hashSize = 16
+
+	// Iterates from the least to the most recently used crop.
+	private val entries = object : LinkedHashMap<String, CachedAmount>(16, 0.75f, true) {
+		override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, CachedAmount>?): Boolean {
+			return size > maxEntries
+		}
+	}
+
+	var hits: Long = 0L
+		private set
+	var misses: Long = 0L
+		private set
+	var verifications: Long = 0L
+		private set
+
+	override fun readAmounts(bitmaps: List<Bitmap>, timeoutMilliseconds: Long): List<Int?> {
+		val hashes = bitmaps.map { hash(it) }
+		val amounts = hashes.map { serve(it) }.toMutableList()
+
+		val unreadIndices = amounts.indices.filter { amounts[it] == null }
+		hits += bitmaps.size - unreadIndices.size
+		misses += unreadIndices.size
+
+		if (unreadIndices.isNotEmpty()) {
+			val readAmounts = delegate.readAmounts(unreadIndices.map { bitmaps[it] }, timeoutMilliseconds)
+			unreadIndices.forEachIndexed { readIndex, index ->
+				amounts[index] = readAmounts[readIndex]
+
+				// Crops that the reader failed on are never remembered as failing again is not the same as reading the same amount.
+				readAmounts[readIndex]?.let { record(hashes[index], it) }
+			}
+		}
+
+		return amounts
+	}
+
+	/**
+	 * Answer the crop from memory if it is trusted and not due to be verified.
+	 *
+	 * @param hash Perceptual hash of the crop.
+	 * @return The remembered amount or null if the crop needs to be read.
+	 */
+	@Synchronized
+	private fun serve(hash: String): Int? {
+		// Also marks the crop as the most recently used.
+		val entry = entries[hash] ?: return null
+		if (entry.confirmations < minConfirmations || entry.conflicted) {
+			return null
+		}
+
+		if (entry.servedSinceVerify >= verifyInterval) {
+			entry.servedSinceVerify = 0
+			verifications += 1
+			return null
+		}
+
+		entry.servedSinceVerify += 1
+		return entry.amount
+	}
+
+	/**
+	 * Remember the amount that was read for the crop or confirm the one that is already remembered.
+	 *
+	 * @param hash Perceptual hash of the crop.
+	 * @param amount The amount that was read.
+	 */
+	@Synchronized
+	private fun record(hash: String, amount: Int) {
+		val entry = entries[hash]
+		if (entry == null) {
+			entries[hash] = CachedAmount(amount)
+		} else if (entry.amount == amount) {
+			entry.confirmations += 1
+		} else {
+			// The crop is ambiguous so it will never be answered from memory.
+			entry.conflicted = true
+		}
+	}
+
+	/**
+	 * Compute the perceptual hash of the crop by binarizing it and downscaling it into a small thumbnail.
+	 *
+	 * @param bitmap Crop of the region next to the item that holds its amount.
+	 * @return The hash as 256 bits written out in hexadecimal.
+	 */
+	private fun hash(bitmap: Bitmap): String {
+		val mat = Mat()
+		Utils.bitmapToMat(bitmap, mat)
+		Imgproc.cvtColor(mat, mat, Imgproc.COLOR_RGBA2GRAY)
+		Imgproc.threshold(mat, mat, binaryThreshold, 255.0, Imgproc.THRESH_BINARY)
+		Imgproc.resize(mat, mat, Size(hashSize.toDouble(), hashSize.toDouble()), 0.0, 0.0, Imgproc.INTER_AREA)
+
+		val pixels = ByteArray(hashSize * hashSize)
+		mat.get(0, 0, pixels)
+		mat.release()
+
+		val hash = LongArray((hashSize * hashSize) / 64)
+		pixels.forEachIndexed { index, pixel ->
+			if ((pixel.toInt() and 0xFF) >= 128) {
+				hash[index / 64] = hash[index / 64] or (1L shl (index % 64))
+			}
+		}
+
+		return hash.joinToString("") { "%016x".format(it) }
+	}
+
+	override fun toString(): String {
+		return "${entries.size} cached crops with $hits hits, $misses misses and $verifications verifications, backed by $delegate"
+	}
+}
@@ -2,26 +2,175 @@ package com.steve1316.granblue_automation_android.utils
 
 import android.content.Context
 import android.graphics.Bitmap
-import com.google.mlkit.vision.common.InputImage
+import android.graphics.BitmapFactory
 import com.google.mlkit.vision.text.TextRecognition
 import com.google.mlkit.vision.text.latin.TextRecognizerOptions
+import com.steve1316.automation_library.data.SharedData
 import com.steve1316.automation_library.utils.ImageUtils
 import com.steve1316.automation_library.utils.MessageLog
 import com.steve1316.granblue_automation_android.bot.Game
+import org.opencv.android.Utils
 import org.opencv.core.*
+import org.opencv.imgproc.Imgproc
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
 /**
  * Utility functions for image processing via CV like OpenCV.
  */
-class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(context) {
+class CustomImageUtils(private val myContext: Context, private val game: Game) : ImageUtils(myContext) {
 	private val tag: String = "${com.steve1316.granblue_automation_android.MainActivity.loggerTag}ImageUtils"
 
+	companion object {
+		// Fixed pool sized to the cores of the device for matching several templates against the same screenshot at once.
+		// It is shared by every instance so that starting the bot again reuses the same threads instead of leaving another idle pool behind.
+		private val matchExecutor: ExecutorService by lazy {
+			Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()) { runnable ->
+				Thread(runnable, "${com.steve1316.granblue_automation_android.MainActivity.loggerTag}ImageUtilsWorker").apply { isDaemon = true }
+			}
+		}
+	}
+
 	// Used for skipping selecting the Summon Element every time on repeated runs.
 	private var summonSelectionFirstRun: Boolean = true
 	private var summonSelectionSameElement: Boolean = true
 
 	private val textRecognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS)
 
+	// Reads the amounts of dropped items from memory if the same crop was read before, otherwise offline if the user enabled it with Google's ML OCR as the fallback.
+	val itemAmountReader: ItemAmountReader = CachingItemAmountReader(
+		if (game.configData.enableOfflineDigitRecognition) {
+			DigitTemplateItemAmountReader(
+				File(myContext.getExternalFilesDir(null), "digit_prototypes.json"), "${SharedData.displayWidth}x${SharedData.displayHeight}",
+				MLKitItemAmountReader(textRecognizer, debugMode), debugMode
+			)
+		} else {
+			MLKitItemAmountReader(textRecognizer, debugMode)
+		}
+	)
+
+	// Records every frame, match result and gesture of the run if the user enabled it.
+	val sessionRecorder: SessionRecorder? = if (game.configData.enableSessionRecording) SessionRecorder(File(myContext.getExternalFilesDir(null), "sessions")) else null
+
+	// Pooled buffers so that steady-state matching does not allocate new native buffers for every screenshot or crop.
+	// The RGBA buffer doubles as the lock that every screenshot is taken under.
+	val matPool = MatPool()
+	private val rgbaBuffer = Mat()
+	private val itemAmountCropPool = BitmapPool(35, 50)
+
+	// Templates that were already converted to raw grayscale pixels at build time.
+	val templateBundle = TemplateBundle(myContext.assets, myContext.filesDir)
+
+	// Decoded templates that have already been converted to grayscale and resized for this device.
+	val templateCache = TemplateCache(isMapped = { templateBundle.isMapped(it) }) { folderName, templateName, scale -> loadTemplate(folderName, templateName, scale) }
+
+	// Where each template was last found on this device so that searches can start from there instead of the full screenshot.
+	val roiIndex = RoiIndex(game.deviceProfile)
+
+	// The scale that the templates were last calibrated to for this device.
+	val scaleCalibrator = ScaleCalibrator(game.deviceProfile)
+
+	// Scores headers against a single screenshot to determine the current screen.
+	private val screenClassifier = ScreenClassifier(
+		templateProvider = { headerName -> templateCache.get("headers", headerName + "_header", getTemplateScales(headerName + "_header", useSingleScale = false).first()) },
+		regionProvider = { headerName -> roiIndex.getRegion("headers", headerName + "_header") },
+		matcher = { sourceMat, headerName -> matchTemplate(sourceMat, "headers", headerName + "_header", intArrayOf(0, 0, 0, 0), confidence) }
+	)
+
+	// Every template inside assets along with its variants and tries budget.
+	val templateRegistry: TemplateRegistry by lazy {
+		TemplateRegistry(game.configData, listOf("buttons", "headers", "items", "summons").associateWith { (myContext.assets.list(it) ?: arrayOf()).toList() })
+	}
+
+	// The scale that each template was last successfully matched at so that the scale sweep can start from there next time.
+	private val lastMatchedScales: MutableMap<String, Double> = ConcurrentHashMap()
+
+	// Scales to sweep through when no custom scale was set, centered on the calibrated scale for this device if there is one or otherwise the scales for devices that are supported internally.
+	// They are worked out again whenever the calibration changes as the scale can be calibrated in the middle of a run.
+	private var deviceScalesCalibration: ScaleCalibrator.Calibration? = null
+	private var cachedDeviceScales: List<Double>? = null
+	private val deviceScales: List<Double>
+		get() {
+			val calibration = scaleCalibrator.calibration
+			cachedDeviceScales?.let { if (calibration == deviceScalesCalibration) return it }
+
+			val calibratedScale = calibration?.scale
+			val scales = when {
+				calibratedScale != null -> sequenceOf(calibratedScale, calibratedScale - 0.01, calibratedScale + 0.01, calibratedScale - 0.02, calibratedScale + 0.02)
+				is720p -> generateSequence(0.50) { it + 0.01 }.takeWhile { it <= 0.70 }
+				isTablet && isTabletLandscape -> generateSequence(0.55) { it + 0.01 }.takeWhile { it <= 0.80 }
+				isTablet -> generateSequence(0.70) { it + 0.01 }.takeWhile { it <= 0.90 }
+				else -> sequenceOf(1.0)
+			}
+
+			return scales.map { decimalFormat.format(it).replace(",", ".").toDouble() }.toList().also {
+				deviceScalesCalibration = calibration
+				cachedDeviceScales = it
+			}
+		}
+
+	// Frame-scoped state so that repeated queries during the same tick reuse the same screenshot and the same match results.
+	private data class FrameQuery(
+		val folderName: String, val templateName: String, val region: List<Int>, val confidence: Double, val useSingleScale: Boolean, val usePyramid: Boolean, val customScale: Double
+	)
+
+	/**
+	 * A source screenshot handed out for matching. It can be given back any number of times but its Mat is only given back once.
+	 *
+	 * @property mat The grayscale screenshot.
+	 * @property timestamp Value of System.nanoTime() right before the screenshot was requested.
+	 */
+	private class SourceFrame(val mat: Mat, val timestamp: Long, private val onRelease: (Mat) -> Unit) {
+		private var released = false
+
+		fun release() {
+			if (!released) {
+				released = true
+				onRelease(mat)
+			}
+		}
+	}
+
+	private var frameScopeDepth: Int = 0
+	private var currentFrame: SourceFrame? = null
+	private var currentCoarseFrame: Mat? = null
+	private val frameMatches: MutableMap<FrameQuery, TemplateMatcher.MatchResult?> = mutableMapOf()
+
+	// Captures screenshots on a background thread if the user enabled it so that capturing overlaps with matching.
+	private val frameProducer: FrameProducer by lazy {
+		FrameProducer(capture = { captureSourceMat() }, recycle = { matPool.recycle(it) })
+	}
+
+	// Factor to downscale the source and template by for the coarse pass of pyramid matching and the smallest coarse template that is still worth matching.
+	private val pyramidFactor = 0.5
+	private val minCoarseTemplateSize = 12
+
+	// Reuses the answers to queries from previous ticks while the region they watch stays unchanged.
+	private val frameChangeDetector = FrameChangeDetector<FrameQuery, TemplateMatcher.MatchResult?>()
+
+	// Incremented every time a new source screenshot is captured.
+	var frameGeneration: Long = 0L
+		private set
+
+	// Decides how long to wait between the tries of findButton() and confirmLocation() and when to give up on them.
+	var retryPolicy: RetryPolicy = if (game.configData.enableAdaptiveRetry) {
+		RetryPolicy.Backoff()
+	} else {
+		// The background capture thread already paces the tries by only handing out newer screenshots.
+		RetryPolicy.Fixed(if (game.configData.enableBackgroundCapture) 0L else 100L)
+	}
+
+	// Latency, tries and hit rate of each kind of search for each template.
+	val matchMetrics = MatchMetrics()
+
+	// Remembers the searched region as of the last try that was matched so that tries against an unchanged region can skip matching.
+	private val retryChangeDetector = FrameChangeDetector<String, Unit>()
+
 	init {
 		setTemplateSubfolderPath("buttons/")
 		adjustTriggerNewImageSwipeBehavior(500f, 500f, 500f, 400f, duration = 250L)
@@ -31,76 +180,463 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 	////////////////////////////////////////////////////////////////////
 
 	/**
-	 * Verify whether the template name is able to be adjusted and return its adjustment.
+	 * Load the template from the preprocessed templates or otherwise decode the template image from the assets, convert it to grayscale and resize it to the specified scale.
 	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
 	 * @param templateName File name of the template image.
-	 * @return The specific adjustment to the specified template or 0 to use the default number of tries.
-	 */
-	private fun determineAdjustment(templateName: String): Int {
-		val calibrationList = arrayListOf("home")
-		val pendingBattlesList = arrayListOf("check_your_pending_battles", "pending_battles", "quest_results_pending_battles")
-		val captchaList = arrayListOf("captcha")
-		val supportSummonSelectionList = arrayListOf("select_a_summon", "coop_without_support_summon", "proving_grounds_summon_selection")
-		val beforeCombatStartList = arrayListOf("attack")
-		val dialogList = arrayListOf("dialog_lyria", "dialog_vyrn")
-		val skillUsageList = arrayListOf("use_skill", "skill_unusable")
-		val summonUsageList = arrayListOf("summon_details", "quick_summon1", "quick_summon2", "quick_summon_not_ready")
-		val noLootScreenList = arrayListOf("no_loot")
-		val battleConcludedPopupList = arrayListOf("battle_concluded")
-		val expGainedPopupList = arrayListOf("exp_gained")
-		val lootCollectionScreenList = arrayListOf("loot_collected")
-		val arcarumList = arrayListOf(
-			"arcarum_party_selection", "arcarum_treasure", "arcarum_node", "arcarum_mob", "arcarum_red_mob", "arcarum_silver_chest", "arcarum_gold_chest", "arcarum_boss", "arcarum_boss2"
-		)
-		val arcarumStageEffectList = arrayListOf("arcarum_stage_effect_active")
+	 * @param scale Scale to resize the template by.
+	 * @return The template Mat or null if the template could not be loaded.
+	 */
+	private fun loadTemplate(folderName: String, templateName: String, scale: Double): Mat? {
+		templateBundle.load(folderName, templateName, scale)?.let { return it }
 
-		return when {
-			game.configData.enableCalibrationAdjustment && calibrationList.contains(templateName) -> {
-				game.configData.adjustCalibration
-			}
-			game.configData.enablePendingBattleAdjustment && pendingBattlesList.contains(templateName) -> {
-				game.configData.adjustPendingBattle
-			}
-			game.configData.enableCaptchaAdjustment && captchaList.contains(templateName) -> {
-				game.configData.adjustCaptcha
-			}
-			game.configData.enableSupportSummonSelectionScreenAdjustment && supportSummonSelectionList.contains(templateName) -> {
-				game.configData.adjustSupportSummonSelectionScreen
-			}
-			game.configData.enableCombatModeAdjustment && beforeCombatStartList.contains(templateName) -> {
-				game.configData.adjustCombatStart
-			}
-			game.configData.enableCombatModeAdjustment && dialogList.contains(templateName) -> {
-				game.configData.adjustDialog
+		val templateBitmap: Bitmap? = try {
+			myContext.assets.open("$folderName/$templateName.webp").use { BitmapFactory.decodeStream(it) }
+		} catch (e: IOException) {
+			null
+		}
+
+		if (templateBitmap == null) {
+			MessageLog.printToLog("[ERROR] Failed to load the ${templateName.uppercase()} template from the $folderName folder.", tag = tag, isError = true)
+			return null
+		}
+
+		val templateMat = Mat()
+		Utils.bitmapToMat(templateBitmap, templateMat)
+		templateBitmap.recycle()
+		Imgproc.cvtColor(templateMat, templateMat, Imgproc.COLOR_RGBA2GRAY)
+
+		if (scale != 1.0) {
+			Imgproc.resize(templateMat, templateMat, Size(templateMat.cols() * scale, templateMat.rows() * scale), 0.0, 0.0, Imgproc.INTER_AREA)
+		}
+
+		return templateMat
+	}
+
+	/**
+	 * Take a screenshot and record how long it took.
+	 *
+	 * @return The screenshot.
+	 */
+	private fun captureScreenshot(): Bitmap {
+		// The background capture thread takes its screenshots while holding the same lock so that the two never ask the library for one at the same time.
+		synchronized(rgbaBuffer) {
+			val startTime = System.nanoTime()
+			val sourceBitmap = getSourceScreenshot()
+			matchMetrics.record("capture", "screenshot", System.nanoTime() - startTime)
+			return sourceBitmap
+		}
+	}
+
+	/**
+	 * Capture a new source screenshot as a grayscale Mat for template matching.
+	 *
+	 * @return The grayscale Mat of the source screenshot. It should be given back to the pool with matPool.recycle() once it is no longer needed.
+	 */
+	private fun captureSourceMat(): Mat {
+		// Both the intermediate RGBA buffer and the grayscale Mat are reused so that no new native buffers are allocated per screenshot.
+		// The buffer is locked as the background capture thread converts screenshots as well.
+		synchronized(rgbaBuffer) {
+			Utils.bitmapToMat(captureScreenshot(), rgbaBuffer)
+			val sourceMat = matPool.acquire(rgbaBuffer.rows(), rgbaBuffer.cols(), CvType.CV_8UC1)
+			Imgproc.cvtColor(rgbaBuffer, sourceMat, Imgproc.COLOR_RGBA2GRAY)
+			return sourceMat
+		}
+	}
+
+	/**
+	 * Run the block as a single tick where every query shares the first screenshot captured and identical queries reuse the same match result.
+	 * The frame gets invalidated when the tick starts and ends so that each tick, including nested ones, begins with a fresh screenshot.
+	 *
+	 * @param block The queries to perform against the same frame.
+	 * @return The result of the block.
+	 */
+	fun <T> withFrame(block: () -> T): T {
+		invalidateFrame()
+		frameScopeDepth += 1
+		try {
+			return block()
+		} finally {
+			frameScopeDepth -= 1
+			invalidateFrame()
+		}
+	}
+
+	/**
+	 * Discard the frame of the current tick as the screen has changed. The next query will capture a new screenshot.
+	 */
+	fun invalidateFrame() {
+		currentFrame?.release()
+		currentFrame = null
+		currentCoarseFrame?.let { matPool.recycle(it) }
+		currentCoarseFrame = null
+		frameMatches.clear()
+
+		// Nothing is matching in between ticks so this is a safe point to free the templates that were evicted.
+		templateCache.releaseEvicted()
+	}
+
+	/**
+	 * Capture a new source screenshot, taking the newest one from the background capture thread if the user enabled it.
+	 * Only the screenshots handed out here get recorded as these are the ones that queries actually match against.
+	 *
+	 * @param newerThan Value of System.nanoTime() that the screenshot needs to be requested after. Defaults to now so that the screenshot is never older than the call.
+	 * @return The SourceFrame of the screenshot.
+	 */
+	private fun captureSourceFrame(newerThan: Long = System.nanoTime()): SourceFrame {
+		frameGeneration += 1
+
+		if (game.configData.enableBackgroundCapture) {
+			val frame = frameProducer.latestFrameNewerThan(newerThan, timeoutMilliseconds = 5000L)
+			if (frame != null) {
+				sessionRecorder?.recordFrame(frame.mat)
+				return SourceFrame(frame.mat, frame.timestamp) { frame.release() }
 			}
-			game.configData.enableCombatModeAdjustment && skillUsageList.contains(templateName) -> {
-				game.configData.adjustSkillUsage
+
+			MessageLog.printToLog("[WARNING] Background capture did not deliver a screenshot in time. Capturing one directly instead...", tag = tag, isWarning = true)
+		}
+
+		val timestamp = System.nanoTime()
+		val sourceMat = captureSourceMat()
+		sessionRecorder?.recordFrame(sourceMat)
+		return SourceFrame(sourceMat, timestamp) { matPool.recycle(it) }
+	}
+
+	/**
+	 * Get the source screenshot to match against, reusing the frame of the current tick if there is one.
+	 *
+	 * @param newerThan Value of System.nanoTime() that a new screenshot needs to be requested after. Defaults to now so that the screenshot is never older than the call.
+	 * @return The SourceFrame of the screenshot.
+	 */
+	private fun acquireSourceFrame(newerThan: Long = System.nanoTime()): SourceFrame {
+		if (frameScopeDepth > 0 && currentFrame != null) {
+			return currentFrame!!
+		}
+
+		val sourceFrame = captureSourceFrame(newerThan)
+		if (frameScopeDepth > 0) {
+			currentFrame = sourceFrame
+		}
+
+		return sourceFrame
+	}
+
+	/**
+	 * Give back the source screenshot unless it is the frame of the current tick.
+	 *
+	 * @param sourceFrame The SourceFrame from acquireSourceFrame().
+	 */
+	private fun releaseSourceFrame(sourceFrame: SourceFrame) {
+		if (sourceFrame !== currentFrame) {
+			sourceFrame.release()
+		}
+	}
+
+	/**
+	 * Get a source screenshot that is newer than the previous one for the next try as the previous one did not have a match.
+	 * With background capture enabled, the screenshot was most likely already captured while the previous one was being matched.
+	 *
+	 * @param sourceFrame The SourceFrame from the previous try.
+	 * @return The SourceFrame of a newer screenshot.
+	 */
+	private fun refreshSourceFrame(sourceFrame: SourceFrame): SourceFrame {
+		if (sourceFrame === currentFrame) {
+			invalidateFrame()
+		} else {
+			sourceFrame.release()
+		}
+
+		return acquireSourceFrame(sourceFrame.timestamp)
+	}
+
+	/**
+	 * Follows a single template search across its tries according to the retry policy and records its metrics once it is finished.
+	 *
+	 * @param operation Name of the kind of search for the metrics.
+	 * @param policy The RetryPolicy that decides how long to wait between tries and when to give up.
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param region The region consisting of (x, y, width, height) being searched.
+	 * @param tries Number of tries budgeted for the search.
+	 */
+	private inner class RetrySession(
+		private val operation: String, private val policy: RetryPolicy, private val folderName: String, private val templateName: String, private val region: IntArray, private val tries: Int
+	) {
+		private val startTime = System.nanoTime()
+		private val key = "$folderName/$templateName"
+		private var watchedRegion: IntArray? = null
+		private var triesUsed = 0
+		private var unchangedRetries = 0
+
+		/**
+		 * Start the next try against the source Mat.
+		 *
+		 * @param sourceMat Grayscale source Mat of this try.
+		 * @return True if the template needs to be matched. False if the result would be the same as the last try that was matched.
+		 */
+		fun beginTry(sourceMat: Mat): Boolean {
+			triesUsed += 1
+
+			// Only the opt-in backoff policy skips tries so that the default policy matches on every try like it always has.
+			if (policy !is RetryPolicy.Backoff) {
+				return true
 			}
-			game.configData.enableCombatModeAdjustment && summonUsageList.contains(templateName) -> {
-				game.configData.adjustSummonUsage
+
+			val lastWatchedRegion = watchedRegion
+			if (lastWatchedRegion != null && retryChangeDetector.getIfUnchanged(key, sourceMat, lastWatchedRegion) != null) {
+				unchangedRetries += 1
+				return false
 			}
-			game.configData.enableCombatModeAdjustment && noLootScreenList.contains(templateName) -> {
-				game.configData.adjustCheckForNoLootScreen
+
+			unchangedRetries = 0
+			watchedRegion = getWatchedRegion(sourceMat, folderName, templateName, region)?.also { retryChangeDetector.put(key, sourceMat, it, Unit) }
+			return true
+		}
+
+		/**
+		 * Ask the retry policy how long to wait before the next try.
+		 *
+		 * @return Number of milliseconds to wait or null to give up.
+		 */
+		fun nextDelay(): Long? {
+			return policy.nextDelay(triesUsed, tries, (System.nanoTime() - startTime) / 1_000_000L, unchangedRetries)
+		}
+
+		/**
+		 * Record the outcome of the search.
+		 *
+		 * @param result The MatchResult or null if the template was not found.
+		 */
+		fun finish(result: TemplateMatcher.MatchResult?) {
+			matchMetrics.record(operation, templateName, System.nanoTime() - startTime, triesUsed, tries, result != null, result?.confidence)
+			sessionRecorder?.recordMatch(operation, templateName, result)
+		}
+	}
+
+	/**
+	 * Determine the scales to resize the template by, starting with the scale that it was last found at.
+	 *
+	 * @param templateName File name of the template image.
+	 * @param useSingleScale Only use the custom scale if one was set.
+	 * @return List of scales to try in order.
+	 */
+	private fun getTemplateScales(templateName: String, useSingleScale: Boolean): List<Double> {
+		val scales: List<Double> = when {
+			customScale != 1.0 && useSingleScale -> {
+				listOf(customScale)
 			}
-			game.configData.enableCombatModeAdjustment && battleConcludedPopupList.contains(templateName) -> {
-				game.configData.adjustCheckForBattleConcludedPopup
+			customScale != 1.0 -> {
+				listOf(customScale, customScale - 0.01, customScale + 0.01, customScale - 0.02, customScale + 0.02).map { decimalFormat.format(it).replace(",", ".").toDouble() }
 			}
-			game.configData.enableCombatModeAdjustment && expGainedPopupList.contains(templateName) -> {
-				game.configData.adjustCheckForExpGainedPopup
+			else -> {
+				deviceScales
 			}
-			game.configData.enableCombatModeAdjustment && lootCollectionScreenList.contains(templateName) -> {
-				game.configData.adjustCheckForLootCollectionScreen
+		}
+
+		val lastScale = lastMatchedScales[templateName]
+		return if (lastScale != null && scales.size > 1 && scales.contains(lastScale)) {
+			listOf(lastScale) + (scales - lastScale)
+		} else {
+			scales
+		}
+	}
+
+	/**
+	 * Match the cached template against the source Mat across the scales for this device.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source screenshot to template match.
+	 * @param customConfidence Minimum score required for the match to count. The confidence tuned for the template inside the DeviceProfile takes its place if it is the default confidence.
+	 * @param useSingleScale Only use the custom scale if one was set.
+	 * @param usePyramid Use coarse-to-fine pyramid matching. Defaults to the setting in ConfigData.
+	 * @return The MatchResult or null if the template was not found.
+	 */
+	private fun matchTemplate(
+		sourceMat: Mat, folderName: String, templateName: String, region: IntArray, customConfidence: Double, useSingleScale: Boolean = false,
+		usePyramid: Boolean = game.configData.enablePyramidMatching
+	): TemplateMatcher.MatchResult? {
+		val minConfidence = getMinConfidence(folderName, templateName, customConfidence)
+		val frameQuery = if (sourceMat === currentFrame?.mat) FrameQuery(folderName, templateName, region.toList(), minConfidence, useSingleScale, usePyramid, customScale) else null
+		getReusedResult(sourceMat, frameQuery)?.let { return it.value }
+
+		val result = matchTemplateAtScales(sourceMat, folderName, templateName, region, minConfidence, useSingleScale, usePyramid)
+		rememberResult(sourceMat, frameQuery, result)
+		return result
+	}
+
+	/**
+	 * Determine the minimum score for the template.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param customConfidence Minimum score requested by the caller.
+	 * @return The confidence tuned for the template inside the DeviceProfile if the caller requested the default confidence or otherwise the requested confidence.
+	 */
+	private fun getMinConfidence(folderName: String, templateName: String, customConfidence: Double): Double {
+		return if (customConfidence == confidence) game.deviceProfile.getConfidence("$folderName/$templateName") ?: customConfidence else customConfidence
+	}
+
+	/**
+	 * Get the answer to the query if it was already made against the frame of the current tick or if the region it watches has not changed since a previous tick.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param frameQuery The query or null if the source Mat is not the frame of the current tick.
+	 * @return The remembered MatchResult or null if the template needs to be matched.
+	 */
+	private fun getReusedResult(sourceMat: Mat, frameQuery: FrameQuery?): FrameChangeDetector.Cached<TemplateMatcher.MatchResult?>? {
+		if (frameQuery == null) {
+			return null
+		}
+
+		if (frameMatches.containsKey(frameQuery)) {
+			return FrameChangeDetector.Cached(frameMatches[frameQuery])
+		}
+
+		val watchedRegion = getWatchedRegion(sourceMat, frameQuery.folderName, frameQuery.templateName, frameQuery.region.toIntArray()) ?: return null
+		return frameChangeDetector.getIfUnchanged(frameQuery, sourceMat, watchedRegion)?.also { frameMatches[frameQuery] = it.value }
+	}
+
+	/**
+	 * Remember the answer to the query for the rest of the current tick and for later ticks while the region it watches stays unchanged.
+	 *
+	 * @param sourceMat Grayscale source Mat that the query was made against.
+	 * @param frameQuery The query or null if the source Mat is not the frame of the current tick.
+	 * @param result The MatchResult or null if the template was not found.
+	 */
+	private fun rememberResult(sourceMat: Mat, frameQuery: FrameQuery?, result: TemplateMatcher.MatchResult?) {
+		if (frameQuery == null) {
+			return
+		}
+
+		frameMatches[frameQuery] = result
+
+		// The template may have been found somewhere else so fetch the watched region again. A template that was not found may be about to appear
+		// so that answer is only carried over into the next tick.
+		getWatchedRegion(sourceMat, frameQuery.folderName, frameQuery.templateName, frameQuery.region.toIntArray())?.let {
+			frameChangeDetector.put(frameQuery, sourceMat, it, result, maxReuses = if (result == null) 1 else 15)
+		}
+	}
+
+	/**
+	 * Determine the region that decides whether the result of a query can be reused across ticks.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param region The region consisting of (x, y, width, height) of the query.
+	 * @return The region to watch or null if the query searches the full screenshot and the template has no known location to watch instead.
+	 */
+	private fun getWatchedRegion(sourceMat: Mat, folderName: String, templateName: String, region: IntArray): IntArray? {
+		val watchedRegion = if (region.contentEquals(intArrayOf(0, 0, 0, 0))) {
+			roiIndex.getSearchRegion(folderName, templateName) ?: return null
+		} else {
+			region
+		}
+
+		// Changes over the full screenshot are too diluted in a thumbnail to be noticed.
+		val rect = TemplateMatcher.toRect(sourceMat, watchedRegion)
+		return if (rect.width > 0 && rect.height > 0 && rect.area() < sourceMat.total() / 2) watchedRegion else null
+	}
+
+	/**
+	 * Match the template against the source Mat, searching around where it was last found on this device first before falling back to the full region.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source screenshot to template match.
+	 * @param customConfidence Minimum score required for the match to count.
+	 * @param useSingleScale Only use the custom scale if one was set.
+	 * @param usePyramid Use coarse-to-fine pyramid matching.
+	 * @return The MatchResult or null if the template was not found.
+	 */
+	private fun matchTemplateAtScales(
+		sourceMat: Mat, folderName: String, templateName: String, region: IntArray, customConfidence: Double, useSingleScale: Boolean, usePyramid: Boolean
+	): TemplateMatcher.MatchResult? {
+		// Only use the indexed region when the caller did not restrict the search themselves.
+		if (region.contentEquals(intArrayOf(0, 0, 0, 0))) {
+			val searchRegion = roiIndex.getSearchRegion(folderName, templateName)
+			if (searchRegion != null) {
+				val result = sweepScales(sourceMat, folderName, templateName, searchRegion, customConfidence, useSingleScale, usePyramid)
+				roiIndex.recordLookup(result != null)
+				if (result != null) {
+					return result
+				}
 			}
-			game.configData.enableArcarumAdjustment && arcarumList.contains(templateName) -> {
-				game.configData.adjustArcarumAction
+		}
+
+		return sweepScales(sourceMat, folderName, templateName, region, customConfidence, useSingleScale, usePyramid)
+	}
+
+	/**
+	 * Sweep through the scales for this device until the cached template matches the source Mat.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source screenshot to template match.
+	 * @param customConfidence Minimum score required for the match to count.
+	 * @param useSingleScale Only use the custom scale if one was set.
+	 * @param usePyramid Use coarse-to-fine pyramid matching.
+	 * @return The MatchResult or null if the template was not found.
+	 */
+	private fun sweepScales(
+		sourceMat: Mat, folderName: String, templateName: String, region: IntArray, customConfidence: Double, useSingleScale: Boolean, usePyramid: Boolean
+	): TemplateMatcher.MatchResult? {
+		val coarseSourceMat = if (usePyramid) acquireCoarseMat(sourceMat) else null
+
+		var result: TemplateMatcher.MatchResult? = null
+		for (scale in getTemplateScales(templateName, useSingleScale)) {
+			val templateMat = templateCache.get(folderName, templateName, scale) ?: break
+
+			// Fall back to matching at full resolution if the downscaled template would be too small to be reliable.
+			val coarseTemplateMat = if (coarseSourceMat != null && templateMat.cols() * pyramidFactor >= minCoarseTemplateSize && templateMat.rows() * pyramidFactor >= minCoarseTemplateSize) {
+				templateCache.get(folderName, templateName, scale * pyramidFactor)
+			} else {
+				null
 			}
-			game.configData.enableArcarumAdjustment && arcarumStageEffectList.contains(templateName) -> {
-				game.configData.adjustArcarumStageEffect
+
+			result = if (coarseSourceMat != null && coarseTemplateMat != null) {
+				TemplateMatcher.matchCoarseToFine(sourceMat, templateMat, coarseSourceMat, coarseTemplateMat, templateName, region, customConfidence)
+			} else {
+				TemplateMatcher.match(sourceMat, templateMat, templateName, region, customConfidence)
 			}
-			else -> {
-				0
+
+			if (result != null) {
+				lastMatchedScales[templateName] = scale
+				roiIndex.record(folderName, templateName, result.location.x, result.location.y, templateMat.cols(), templateMat.rows())
+				break
 			}
 		}
+
+		if (coarseSourceMat != null && coarseSourceMat !== currentCoarseFrame) {
+			matPool.recycle(coarseSourceMat)
+		}
+
+		return result
+	}
+
+	/**
+	 * Get the source Mat downscaled for the coarse pass of pyramid matching, reusing the one for the frame of the current tick if there is one.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @return The downscaled source Mat.
+	 */
+	private fun acquireCoarseMat(sourceMat: Mat): Mat {
+		if (sourceMat === currentFrame?.mat && currentCoarseFrame != null) {
+			return currentCoarseFrame!!
+		}
+
+		val coarseSize = Size(sourceMat.cols() * pyramidFactor, sourceMat.rows() * pyramidFactor)
+		val coarseSourceMat = matPool.acquire(coarseSize.height.toInt(), coarseSize.width.toInt(), CvType.CV_8UC1)
+		Imgproc.resize(sourceMat, coarseSourceMat, coarseSize, 0.0, 0.0, Imgproc.INTER_AREA)
+		if (sourceMat === currentFrame?.mat) {
+			currentCoarseFrame = coarseSourceMat
+		}
+
+		return coarseSourceMat
 	}
 
 	/**
@@ -113,85 +649,212 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 	 * @param suppressError Whether or not to suppress saving error messages to the log. Defaults to false.
 	 * @param disableAdjustment Disable the usage of adjustment to tries. Defaults to False.
 	 * @param bypassGeneralAdjustment Bypass using the general adjustment for the number of tries. Defaults to False.
-	 * @param testMode Flag to test and get a valid scale for device compatibility. Defaults to False.
+	 * @param usePyramid Use coarse-to-fine pyramid matching. Defaults to the setting in ConfigData.
 	 * @return Point object containing the location of the match or null if not found.
 	 */
 	fun findButton(
 		templateName: String, tries: Int = 5, region: IntArray = intArrayOf(0, 0, 0, 0), customConfidence: Double = confidence, suppressError: Boolean = false,
-		disableAdjustment: Boolean = false, bypassGeneralAdjustment: Boolean = false, testMode: Boolean = false
+		disableAdjustment: Boolean = false, bypassGeneralAdjustment: Boolean = false, usePyramid: Boolean = game.configData.enablePyramidMatching
 	): Point? {
 		val folderName = "buttons"
-		var numberOfTries = determineAdjustment(templateName)
-		numberOfTries = if (numberOfTries == 0 && !disableAdjustment) {
-			if (game.configData.enableGeneralAdjustment && !bypassGeneralAdjustment && tries == 5) {
-				game.configData.adjustButtonSearchGeneral
+		val adjustedTries = templateRegistry.getTries(templateName)
+		val numberOfTries = when {
+			// Templates with their own adjustment keep the caller's tries like they always have so that single probes and vanish checks stay short.
+			disableAdjustment || adjustedTries != 0 -> tries
+			game.configData.enableGeneralAdjustment && !bypassGeneralAdjustment && tries == 5 -> game.configData.adjustButtonSearchGeneral
+			else -> tries
+		}
+
+		if (debugMode) {
+			MessageLog.printToLog("\n[DEBUG] Starting process to find the ${templateName.uppercase()} button image...", tag = tag)
+		}
+
+		val retrySession = RetrySession("findButton", retryPolicy, folderName, templateName, region, numberOfTries)
+
+		var sourceFrame = acquireSourceFrame()
+
+		while (true) {
+			val result = if (retrySession.beginTry(sourceFrame.mat)) {
+				matchTemplate(sourceFrame.mat, folderName, templateName, region, customConfidence, useSingleScale = true, usePyramid = usePyramid)
+			} else {
+				null
+			}
+
+			if (result == null) {
+				val delay = retrySession.nextDelay()
+				if (delay == null) {
+					if (!suppressError) {
+						MessageLog.printToLog("[WARNING] Failed to find the ${templateName.uppercase()} button.", tag = tag)
+					}
+
+					break
+				}
+
+				if (delay > 0L) {
+					game.wait(delay / 1000.0)
+				}
+
+				sourceFrame = refreshSourceFrame(sourceFrame)
 			} else {
-				tries
+				if (game.configData.debugMode) {
+					MessageLog.printToLog("[DEBUG] Found the ${templateName.uppercase()} at ${result.location}.", tag = tag)
+				}
+
+				retrySession.finish(result)
+				releaseSourceFrame(sourceFrame)
+				return result.location
 			}
+		}
+
+		retrySession.finish(null)
+		releaseSourceFrame(sourceFrame)
+		return null
+	}
+
+	/**
+	 * Find the button by checking the location that it was anchored at on this device first with a single try before searching for it as usual.
+	 * The anchor is moved to wherever the button was found and forgotten if the button could not be found at all.
+	 *
+	 * @param buttonName File name of the template image which is also the name of the anchor.
+	 * @return Point object containing the location of the match or null if not found.
+	 */
+	fun findAnchoredButton(buttonName: String): Point? {
+		val anchor = game.deviceProfile.getAnchor(buttonName)
+		if (anchor != null) {
+			// Search around where the button was last found on this device or otherwise a box around the anchor that fits the button.
+			val region = roiIndex.getSearchRegion("buttons", buttonName) ?: run {
+				// Clamp both edges of the box to the screen so that it never runs past the right or bottom of the screenshot.
+				val left = (anchor.x.toInt() - 200).coerceAtLeast(0)
+				val top = (anchor.y.toInt() - 100).coerceAtLeast(0)
+				val right = (anchor.x.toInt() + 200).coerceAtMost(SharedData.displayWidth)
+				val bottom = (anchor.y.toInt() + 100).coerceAtMost(SharedData.displayHeight)
+				intArrayOf(left, top, right - left, bottom - top)
+			}
+			val location = findButton(buttonName, tries = 1, region = region, suppressError = true, disableAdjustment = true)
+			if (location != null) {
+				game.deviceProfile.setAnchor(buttonName, location)
+				return location
+			}
+
+			MessageLog.printToLog("[INFO] The ${buttonName.uppercase()} button is no longer at its saved location. Searching for it again...", tag = tag)
+		}
+
+		val location = findButton(buttonName)
+		if (location != null) {
+			game.deviceProfile.setAnchor(buttonName, location)
 		} else {
-			tries
+			game.deviceProfile.clearAnchor(buttonName)
 		}
 
-		if (debugMode) {
-			MessageLog.printToLog("\n[DEBUG] Starting process to find the ${templateName.uppercase()} button image...", tag = tag)
+		return location
+	}
+
+	/**
+	 * Calibrate the scale for this device from a single screenshot using whichever of the reference templates is currently on the screen.
+	 * The calibrated scale is used on later runs whenever no custom scale was set.
+	 *
+	 * @return The scale that was found or null if none of the reference templates could be found at any scale.
+	 */
+	fun calibrateScale(): Double? {
+		MessageLog.printToLog("\n[INFO] Calibrating the scale for this device from the current screen...", tag = tag)
+
+		// Loaded at their original scale as the calibrator resizes them itself.
+		val references = listOf("buttons" to "home", "buttons" to "attack", "headers" to "select_a_summon_header").mapNotNull { (folderName, templateName) ->
+			templateCache.get(folderName, templateName, 1.0)?.let { templateName to it }
+		}.toMap()
+
+		val startTime = System.nanoTime()
+		val sourceFrame = acquireSourceFrame()
+		val calibration = scaleCalibrator.calibrate(sourceFrame.mat, references, confidence)
+		releaseSourceFrame(sourceFrame)
+
+		val elapsedNanoseconds = System.nanoTime() - startTime
+		matchMetrics.record("calibrateScale", calibration?.templateName ?: "", elapsedNanoseconds, 1, 1, calibration != null, calibration?.confidence)
+
+		if (calibration == null) {
+			MessageLog.printToLog("[WARNING] Failed to calibrate the scale as none of ${references.keys.map { it.uppercase() }} could be found on the screen at any scale.", tag = tag, isWarning = true)
+			return null
 		}
 
-		// If Test Mode is enabled, prepare for it by setting initial scale.
-		if (testMode) {
-			numberOfTries = 80
-			customScale = 0.20
+		MessageLog.printToLog(
+			"[SUCCESS] Found the ${calibration.templateName.uppercase()} with scale ${calibration.scale} at ${decimalFormat.format(calibration.confidence)} confidence " +
+					"after ${scaleCalibrator.evaluations} matches in ${elapsedNanoseconds / 1_000_000L}ms.\n\nThe scale has been saved for this device and will be used whenever no custom scale is set.",
+			tag = tag
+		)
+
+		return calibration.scale
+	}
+
+	/**
+	 * Finds the best scoring variant of the specified button by matching every one of its variants against the same screenshot on each try.
+	 * Buttons without variants are searched for as is.
+	 *
+	 * @param buttonName Name of the button.
+	 * @param tries Number of tries shared by all of the variants. Defaults to 5.
+	 * @param customConfidence Use a custom confidence for the template matching. Defaults to the device default.
+	 * @param suppressError Whether or not to suppress saving error messages to the log. Defaults to false.
+	 * @param bypassGeneralAdjustment Bypass using the general adjustment for the number of tries. Defaults to False.
+	 * @return Pair of the file name of the variant that was found and its location or null if none of them were found.
+	 */
+	fun findButtonVariant(
+		buttonName: String, tries: Int = 5, customConfidence: Double = confidence, suppressError: Boolean = false, bypassGeneralAdjustment: Boolean = false
+	): Pair<String, Point>? {
+		val variants = templateRegistry.getVariants(buttonName)
+		if (variants.size == 1) {
+			return findButton(variants[0], tries = tries, customConfidence = customConfidence, suppressError = suppressError, bypassGeneralAdjustment = bypassGeneralAdjustment)
+				?.let { Pair(variants[0], it) }
 		}
 
-		var (sourceBitmap, templateBitmap) = getBitmaps(templateName, folderName)
+		val folderName = "buttons"
+		val numberOfTries = if (game.configData.enableGeneralAdjustment && !bypassGeneralAdjustment && tries == 5) {
+			game.configData.adjustButtonSearchGeneral
+		} else {
+			tries
+		}
 
-		while (numberOfTries > 0) {
-			if (sourceBitmap != null && templateBitmap != null) {
-				val resultFlag: Boolean = match(sourceBitmap, templateBitmap, region, customConfidence = customConfidence, useSingleScale = true)
-				if (!resultFlag) {
-					if (testMode) {
-						// Increment scale by 0.01 until a match is found if Test Mode is enabled.
-						customScale += 0.01
-						customScale = decimalFormat.format(customScale).replace(",", ".").toDouble()
-					}
+		if (debugMode) {
+			MessageLog.printToLog("\n[DEBUG] Starting process to find the ${buttonName.uppercase()} button image by any of its variants: $variants", tag = tag)
+		}
 
-					numberOfTries -= 1
-					if (numberOfTries <= 0) {
-						if (!suppressError) {
-							MessageLog.printToLog("[WARNING] Failed to find the ${templateName.uppercase()} button.", tag = tag)
-						}
+		val retrySession = RetrySession("findButton", retryPolicy, folderName, buttonName, intArrayOf(0, 0, 0, 0), numberOfTries)
+		var sourceFrame = acquireSourceFrame()
 
-						break
-					}
+		while (true) {
+			// Score every variant against the same screenshot and keep the best one.
+			val result = if (retrySession.beginTry(sourceFrame.mat)) {
+				variants.mapNotNull { matchTemplate(sourceFrame.mat, folderName, it, intArrayOf(0, 0, 0, 0), customConfidence, useSingleScale = true) }.maxByOrNull { it.confidence }
+			} else {
+				null
+			}
 
-					if (!testMode) {
-						game.wait(0.1)
-					}
+			if (result != null) {
+				if (game.configData.debugMode) {
+					MessageLog.printToLog("[DEBUG] Found the ${buttonName.uppercase()} as ${result.templateName.uppercase()} at ${result.location}.", tag = tag)
+				}
 
-					sourceBitmap = getSourceScreenshot()
-				} else {
-					if (testMode) {
-						// Create a range of scales for user recommendation.
-						val scale0: Double = decimalFormat.format(customScale).replace(",", ".").toDouble()
-						val scale1: Double = decimalFormat.format(scale0 + 0.01).replace(",", ".").toDouble()
-						val scale2: Double = decimalFormat.format(scale0 + 0.02).replace(",", ".").toDouble()
-						val scale3: Double = decimalFormat.format(scale0 + 0.03).replace(",", ".").toDouble()
-						val scale4: Double = decimalFormat.format(scale0 + 0.04).replace(",", ".").toDouble()
-
-						MessageLog.printToLog(
-							"[SUCCESS] Found the ${templateName.uppercase()} at $matchLocation with scale $scale0.\n\nRecommended to use scale $scale1, $scale2, $scale3 or $scale4.",
-							tag = tag
-						)
-					} else {
-						if (game.configData.debugMode) {
-							MessageLog.printToLog("[DEBUG] Found the ${templateName.uppercase()} at $matchLocation.", tag = tag)
-						}
-					}
+				retrySession.finish(result)
+				releaseSourceFrame(sourceFrame)
+				return Pair(result.templateName, result.location)
+			}
 
-					return matchLocation
+			val delay = retrySession.nextDelay()
+			if (delay == null) {
+				if (!suppressError) {
+					MessageLog.printToLog("[WARNING] Failed to find the ${buttonName.uppercase()} button by any of its variants.", tag = tag)
 				}
+
+				break
 			}
+
+			if (delay > 0L) {
+				game.wait(delay / 1000.0)
+			}
+
+			sourceFrame = refreshSourceFrame(sourceFrame)
 		}
 
+		retrySession.finish(null)
+		releaseSourceFrame(sourceFrame)
 		return null
 	}
 
@@ -205,61 +868,66 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 	 * @param suppressError Whether or not to suppress saving error messages to the log.
 	 * @param disableAdjustment Disable the usage of adjustment to tries. Defaults to False.
 	 * @param bypassGeneralAdjustment Bypass using the general adjustment for the number of tries. Defaults to False.
+	 * @param usePyramid Use coarse-to-fine pyramid matching. Defaults to the setting in ConfigData.
 	 * @return True if the current location is at the specified location. False otherwise.
 	 */
 	fun confirmLocation(
 		templateName: String, tries: Int = 5, region: IntArray = intArrayOf(0, 0, 0, 0), customConfidence: Double = confidence, suppressError: Boolean = false,
-		disableAdjustment: Boolean = false, bypassGeneralAdjustment: Boolean = false
+		disableAdjustment: Boolean = false, bypassGeneralAdjustment: Boolean = false, usePyramid: Boolean = game.configData.enablePyramidMatching
 	): Boolean {
 		val folderName = "headers"
-		var numberOfTries = determineAdjustment(templateName)
-		numberOfTries = if (numberOfTries == 0 && !disableAdjustment) {
-			if (game.configData.enableGeneralAdjustment && !bypassGeneralAdjustment && tries == 5) {
-				game.configData.adjustHeaderSearchGeneral
-			} else {
-				tries
-			}
-		} else {
-			tries
+		val adjustedTries = templateRegistry.getTries(templateName)
+		val numberOfTries = when {
+			// Templates with their own adjustment keep the caller's tries like they always have so that single probes and vanish checks stay short.
+			disableAdjustment || adjustedTries != 0 -> tries
+			game.configData.enableGeneralAdjustment && !bypassGeneralAdjustment && tries == 5 -> game.configData.adjustHeaderSearchGeneral
+			else -> tries
 		}
 
 		if (debugMode) {
 			MessageLog.printToLog("\n[DEBUG] Starting process to find the ${templateName.uppercase()} header image...", tag = tag)
 		}
 
-		var (sourceBitmap, templateBitmap) = getBitmaps(templateName + "_header", folderName)
+		val retrySession = RetrySession("confirmLocation", retryPolicy, folderName, templateName + "_header", region, numberOfTries)
+		var sourceFrame = acquireSourceFrame()
 
-		while (numberOfTries > 0) {
-			if (sourceBitmap != null && templateBitmap != null) {
-				val resultFlag: Boolean = match(sourceBitmap, templateBitmap, region, customConfidence = customConfidence)
-				if (!resultFlag) {
-					numberOfTries -= 1
-					if (numberOfTries <= 0) {
-						break
-					}
+		while (true) {
+			val result = if (retrySession.beginTry(sourceFrame.mat)) {
+				matchTemplate(sourceFrame.mat, folderName, templateName + "_header", region, customConfidence, usePyramid = usePyramid)
+			} else {
+				null
+			}
 
-					// Attempt to fix the issue where the Summon Selection page loaded in at the bottom of the view.
-					if (templateName == "select_a_summon") {
-						game.wait(0.5)
-						if (game.imageUtils.findButton("bottom_of_summon_selection") != null) {
-							game.findAndClickButton("reload")
-						}
-					}
+			if (result == null) {
+				val delay = retrySession.nextDelay() ?: break
 
-					game.wait(0.1)
-					sourceBitmap = getSourceScreenshot()
-				} else {
-					if (game.configData.debugMode) {
-						MessageLog.printToLog("[DEBUG] Current location confirmed to be at ${templateName.uppercase()}.", tag = tag)
+				// Attempt to fix the issue where the Summon Selection page loaded in at the bottom of the view.
+				if (templateName == "select_a_summon") {
+					game.wait(0.5)
+					if (game.imageUtils.findButton("bottom_of_summon_selection") != null) {
+						game.findAndClickButton("reload")
 					}
+				}
 
-					return true
+				if (delay > 0L) {
+					game.wait(delay / 1000.0)
 				}
+
+				sourceFrame = refreshSourceFrame(sourceFrame)
 			} else {
-				break
+				if (game.configData.debugMode) {
+					MessageLog.printToLog("[DEBUG] Current location confirmed to be at ${templateName.uppercase()}.", tag = tag)
+				}
+
+				retrySession.finish(result)
+				releaseSourceFrame(sourceFrame)
+				return true
 			}
 		}
 
+		retrySession.finish(null)
+		releaseSourceFrame(sourceFrame)
+
 		if (!suppressError) {
 			MessageLog.printToLog("[WARNING] Failed to confirm the bot location at ${templateName.uppercase()}.", tag = tag)
 		}
@@ -267,6 +935,211 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 		return false
 	}
 
+	/**
+	 * Captures a single screenshot and matches every one of the specified templates against it.
+	 *
+	 * @param templateNames File names of the template images in the /buttons/ folder.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source screenshot to template match. Defaults to (0, 0, 0, 0) which is equivalent to searching the full image.
+	 * @param customConfidence Use a custom confidence for the template matching. Defaults to the device default.
+	 * @param headerNames File names of the template images in the /headers/ folder to also match against the same screenshot. Defaults to none.
+	 * @return List of every match sorted by descending confidence. Headers are reported by their name without the "_header" suffix.
+	 */
+	fun findAny(
+		templateNames: List<String>, region: IntArray = intArrayOf(0, 0, 0, 0), customConfidence: Double = confidence, headerNames: List<String> = listOf()
+	): ArrayList<TemplateMatcher.MatchResult> {
+		if (debugMode) {
+			MessageLog.printToLog("\n[DEBUG] Starting process to find any of the following images in a single screenshot: ${templateNames + headerNames}", tag = tag)
+		}
+
+		val sourceFrame = acquireSourceFrame()
+		val sourceMat = sourceFrame.mat
+		val results = arrayListOf<TemplateMatcher.MatchResult>()
+
+		templateNames.forEach { templateName ->
+			matchTemplate(sourceMat, "buttons", templateName, region, customConfidence, useSingleScale = true)?.let { results.add(it) }
+		}
+
+		headerNames.forEach { headerName ->
+			matchTemplate(sourceMat, "headers", headerName + "_header", region, customConfidence)?.let { results.add(it.copy(templateName = headerName)) }
+		}
+
+		releaseSourceFrame(sourceFrame)
+
+		results.sortByDescending { it.confidence }
+
+		if (game.configData.debugMode) {
+			MessageLog.printToLog("[DEBUG] Found the following matches: ${results.map { "${it.templateName} (${decimalFormat.format(it.confidence)})" }}", tag = tag)
+		}
+
+		return results
+	}
+
+	/**
+	 * Determine which of the specified headers the current screen is showing by checking them in order against a single screenshot.
+	 *
+	 * @param headerNames File names of the template images in the /headers/ folder without the "_header" suffix in order of priority. Defaults to every header.
+	 * @return The Classification of the first header that was found or null if none of the headers were found.
+	 */
+	fun classifyScreen(headerNames: List<String> = templateRegistry.headerNames): ScreenClassifier.Classification? {
+		val sourceFrame = acquireSourceFrame()
+		val sourceMat = sourceFrame.mat
+		val classification = screenClassifier.classify(sourceMat, headerNames)
+		releaseSourceFrame(sourceFrame)
+
+		if (game.configData.debugMode) {
+			if (classification != null) {
+				MessageLog.printToLog("[DEBUG] Classified the current screen as ${classification.screen.uppercase()} with ${decimalFormat.format(classification.confidence)} confidence.", tag = tag)
+			} else {
+				MessageLog.printToLog("[DEBUG] Current screen did not match any of the following headers: $headerNames", tag = tag)
+			}
+		}
+
+		return classification
+	}
+
+	/**
+	 * A template resized to one of the scales being swept through along with its downscaled copy for the coarse pass of pyramid matching.
+	 *
+	 * @property scale The scale that the template was resized by.
+	 * @property templateMat Grayscale template Mat at that scale.
+	 * @property coarseTemplateMat Grayscale template Mat for the coarse pass or null to match at full resolution.
+	 */
+	private class ScaledTemplate(val scale: Double, val templateMat: Mat, val coarseTemplateMat: Mat?)
+
+	/**
+	 * Where a parallel sweep found its template.
+	 *
+	 * @property result The MatchResult.
+	 * @property scaledTemplate The ScaledTemplate that matched.
+	 * @property regionIndex Index of the region that the template was found in.
+	 */
+	private class SweepHit(val result: TemplateMatcher.MatchResult, val scaledTemplate: ScaledTemplate, val regionIndex: Int)
+
+	/**
+	 * Match each of the templates against the same source Mat in parallel.
+	 *
+	 * The workers only ever read the source Mat and templates that were handed to them. Everything that touches shared state such as the frame of the current tick,
+	 * the template cache, the region index and the DeviceProfile happens on the calling thread before the workers start and after they are done.
+	 *
+	 * @param sourceMat Grayscale source Mat that will not be modified.
+	 * @param folderName Name of the folder inside assets that holds the templates.
+	 * @param templateNames File names of the template images.
+	 * @param customConfidence Minimum score required for each match to count.
+	 * @return The MatchResult for each template in the same order or null for the templates that were not found.
+	 */
+	private fun matchInParallel(sourceMat: Mat, folderName: String, templateNames: List<String>, customConfidence: Double): List<TemplateMatcher.MatchResult?> {
+		if (templateNames.size <= 1) {
+			return templateNames.map { matchTemplate(sourceMat, folderName, it, intArrayOf(0, 0, 0, 0), customConfidence) }
+		}
+
+		val usePyramid = game.configData.enablePyramidMatching
+		val coarseSourceMat = if (usePyramid) acquireCoarseMat(sourceMat) else null
+
+		val results = arrayOfNulls<TemplateMatcher.MatchResult>(templateNames.size)
+		val pending = templateNames.mapIndexedNotNull { index, templateName ->
+			val minConfidence = getMinConfidence(folderName, templateName, customConfidence)
+			val frameQuery = if (sourceMat === currentFrame?.mat) FrameQuery(folderName, templateName, listOf(0, 0, 0, 0), minConfidence, false, usePyramid, customScale) else null
+			val reused = getReusedResult(sourceMat, frameQuery)
+			if (reused != null) {
+				results[index] = reused.value
+				return@mapIndexedNotNull null
+			}
+
+			// Search around where the template was last found before falling back to the full screenshot.
+			val searchRegion = roiIndex.getSearchRegion(folderName, templateName)
+			val regions = listOfNotNull(searchRegion, intArrayOf(0, 0, 0, 0))
+			val scaledTemplates = getScaledTemplates(folderName, templateName, coarseSourceMat != null)
+			val future = matchExecutor.submit(Callable { sweepScaledTemplates(sourceMat, coarseSourceMat, templateName, scaledTemplates, regions, minConfidence) })
+
+			Triple(index, frameQuery, searchRegion != null) to future
+		}
+
+		pending.forEach { (entry, future) ->
+			val (index, frameQuery, hasSearchRegion) = entry
+			val hit = try {
+				future.get()
+			} catch (e: ExecutionException) {
+				throw e.cause ?: e
+			}
+
+			val templateName = templateNames[index]
+			if (hasSearchRegion) {
+				roiIndex.recordLookup(hit?.regionIndex == 0)
+			}
+
+			if (hit != null) {
+				lastMatchedScales[templateName] = hit.scaledTemplate.scale
+				roiIndex.record(folderName, templateName, hit.result.location.x, hit.result.location.y, hit.scaledTemplate.templateMat.cols(), hit.scaledTemplate.templateMat.rows())
+			}
+
+			results[index] = hit?.result
+			rememberResult(sourceMat, frameQuery, hit?.result)
+		}
+
+		if (coarseSourceMat != null && coarseSourceMat !== currentCoarseFrame) {
+			matPool.recycle(coarseSourceMat)
+		}
+
+		return results.toList()
+	}
+
+	/**
+	 * Fetch the template resized to each of the scales for this device from the template cache.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param usePyramid Also fetch the downscaled templates for the coarse pass of pyramid matching.
+	 * @return The ScaledTemplates in the order that the scales should be tried in.
+	 */
+	private fun getScaledTemplates(folderName: String, templateName: String, usePyramid: Boolean): List<ScaledTemplate> {
+		val scaledTemplates = arrayListOf<ScaledTemplate>()
+		for (scale in getTemplateScales(templateName, useSingleScale = false)) {
+			val templateMat = templateCache.get(folderName, templateName, scale) ?: break
+
+			// Fall back to matching at full resolution if the downscaled template would be too small to be reliable.
+			val coarseTemplateMat = if (usePyramid && templateMat.cols() * pyramidFactor >= minCoarseTemplateSize && templateMat.rows() * pyramidFactor >= minCoarseTemplateSize) {
+				templateCache.get(folderName, templateName, scale * pyramidFactor)
+			} else {
+				null
+			}
+
+			scaledTemplates.add(ScaledTemplate(scale, templateMat, coarseTemplateMat))
+		}
+
+		return scaledTemplates
+	}
+
+	/**
+	 * Sweep through the scaled templates in each of the regions until one of them matches. This only reads its arguments so that it is safe to run on any thread.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param coarseSourceMat Downscaled source Mat for the coarse pass of pyramid matching or null to match at full resolution.
+	 * @param templateName File name of the template image.
+	 * @param scaledTemplates The ScaledTemplates to try in order.
+	 * @param regions The regions consisting of (x, y, width, height) to search in order.
+	 * @param minConfidence Minimum score required for the match to count.
+	 * @return The SweepHit or null if the template was not found.
+	 */
+	private fun sweepScaledTemplates(
+		sourceMat: Mat, coarseSourceMat: Mat?, templateName: String, scaledTemplates: List<ScaledTemplate>, regions: List<IntArray>, minConfidence: Double
+	): SweepHit? {
+		regions.forEachIndexed { regionIndex, region ->
+			for (scaledTemplate in scaledTemplates) {
+				val result = if (coarseSourceMat != null && scaledTemplate.coarseTemplateMat != null) {
+					TemplateMatcher.matchCoarseToFine(sourceMat, scaledTemplate.templateMat, coarseSourceMat, scaledTemplate.coarseTemplateMat, templateName, region, minConfidence)
+				} else {
+					TemplateMatcher.match(sourceMat, scaledTemplate.templateMat, templateName, region, minConfidence)
+				}
+
+				if (result != null) {
+					return SweepHit(result, scaledTemplate, regionIndex)
+				}
+			}
+		}
+
+		return null
+	}
+
 	/**
 	 * Finds the location of the specified Summon.
 	 *
@@ -327,29 +1200,43 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 					}
 				}
 
-				val summonName = summonList[summonIndex]
-				val (sourceBitmap, templateBitmap) = getBitmaps(summonName, folderName)
-
-				val resultFlag: Boolean = match(sourceBitmap!!, templateBitmap!!, customConfidence = 0.7)
+				// Every Summon from this index onwards can be on the current page if they all share the same element. Otherwise, only the run of Summons sharing the current element can be.
+				val candidateIndices = if (summonSelectionSameElement) {
+					(summonIndex until summonList.size).toList()
+				} else {
+					(summonIndex until summonList.size).takeWhile { summonElementList.getOrNull(it) == summonElementList[summonElementIndex] }
+				}
 
-				if (resultFlag) {
+				// Match all of the candidates against the same screenshot of the current page in parallel.
+				val startTime = System.nanoTime()
+				val sourceFrame = captureSourceFrame()
+				val results = matchInParallel(sourceFrame.mat, folderName, candidateIndices.map { summonList[it] }, customConfidence = 0.7)
+				sourceFrame.release()
+
+				// Candidates are in priority order so the first hit is the best one.
+				val hitIndex = results.indexOfFirst { it != null }
+				val candidateNames = candidateIndices.joinToString("/") { summonList[it] }
+				matchMetrics.record("findSummon", candidateNames, System.nanoTime() - startTime, found = hitIndex != -1, confidence = results.getOrNull(hitIndex)?.confidence)
+				sessionRecorder?.recordMatch("findSummon", candidateNames, results.getOrNull(hitIndex))
+				if (hitIndex != -1) {
+					val result = results[hitIndex]!!
 					if (game.configData.debugMode) {
-						MessageLog.printToLog("[SUCCESS] Found ${summonList[summonIndex].uppercase()} Summon at $matchLocation.", tag = tag)
+						MessageLog.printToLog("[SUCCESS] Found ${summonList[candidateIndices[hitIndex]].uppercase()} Summon at ${result.location}.", tag = tag)
 					}
 
-					return matchLocation
+					return result.location
 				} else {
 					if (!suppressError) {
-						MessageLog.printToLog("[WARNING] Could not locate ${summonList[summonIndex].uppercase()} Summon.", tag = tag)
+						MessageLog.printToLog("[WARNING] Could not locate ${candidateIndices.joinToString(", ") { summonList[it].uppercase() }} Summon(s) on this page.", tag = tag)
 					}
 
 					if (summonSelectionSameElement) {
-						summonIndex += 1
+						summonIndex += candidateIndices.size
 					} else {
-						// Keep searching for the same summon until the bot reaches the bottom of the page. Then reset the page and move to the next summon's element.
+						// Keep searching for the same summons until the bot reaches the bottom of the page. Then reset the page and move to the next summon's element.
 						if (findButton("bottom_of_summon_selection", tries = 1) != null) {
-							summonIndex += 1
-							summonElementIndex += 1
+							summonIndex += candidateIndices.size
+							summonElementIndex += candidateIndices.size
 
 							// If the bot cycled through the list of summon elements without find a match, reset Summons.
 							if (!summonSelectionSameElement && summonElementIndex >= summonElementList.size) {
@@ -370,7 +1257,7 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 						}
 					}
 
-					tries -= 1
+					tries -= candidateIndices.size
 				}
 			}
 
@@ -412,15 +1299,27 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 			MessageLog.printToLog("\n[DEBUG] Starting process to find all ${templateName.uppercase()} images...", tag = tag)
 		}
 
-		val (sourceBitmap, templateBitmap) = getBitmaps(templateName, folderName)
-
-		// Clear the ArrayList first before attempting to find all matches.
-		matchLocations.clear()
-
-		if (sourceBitmap != null && templateBitmap != null) {
-			matchAll(sourceBitmap, templateBitmap, region = region, customConfidence = customConfidence)
+		val startTime = System.nanoTime()
+		val sourceFrame = acquireSourceFrame()
+		val sourceMat = sourceFrame.mat
+		val matchLocations = arrayListOf<Point>()
+		var bestResult: TemplateMatcher.MatchResult? = null
+
+		for (scale in getTemplateScales(templateName, useSingleScale = false)) {
+			val templateMat = templateCache.get(folderName, templateName, scale) ?: break
+			val results = TemplateMatcher.matchAll(sourceMat, templateMat, templateName, region, customConfidence)
+			if (results.isNotEmpty()) {
+				lastMatchedScales[templateName] = scale
+				results.mapTo(matchLocations) { it.location }
+				bestResult = results.first()
+				break
+			}
 		}
 
+		releaseSourceFrame(sourceFrame)
+		matchMetrics.record("findAll", templateName, System.nanoTime() - startTime, found = bestResult != null, confidence = bestResult?.confidence)
+		sessionRecorder?.recordMatch("findAll", templateName, bestResult)
+
 		// Sort the match locations by ascending x and y coordinates.
 		matchLocations.sortBy { it.x }
 		matchLocations.sortBy { it.y }
@@ -497,48 +1396,19 @@ class CustomImageUtils(context: Context, private val game: Game) : ImageUtils(co
 
 		MessageLog.printToLog("[INFO] Now detecting item rewards.", tag = tag)
 
-		// Reset the total item amount.
-		var totalItemAmount = 0
-
 		// Get the locations of all of the specified item.
 		val itemLocations: ArrayList<Point> = findAll(templateName, isItem = true)
 
 		// Grab a reference to the source bitmap.
-		val sourceBitmap = getSourceScreenshot()
+		val sourceBitmap = captureScreenshot()
 
-		for (itemLocation in itemLocations) {
-			// Crop the source bitmap to hold only the item amount.
-			val croppedItemAmountBitmap = Bitmap.createBitmap(sourceBitmap, (itemLocation.x + 50).toInt(), (itemLocation.y).toInt() - 10, 35, 50)
-
-			// Create a InputImage object for Google's ML OCR.
-			val inputImage = InputImage.fromBitmap(croppedItemAmountBitmap, 0)
-
-			// Start the asynchronous operation of text detection. Increment the total item amount whenever it detects a numerical amount.
-			textRecognizer.process(inputImage).addOnSuccessListener {
-				if (it.textBlocks.size == 0) {
-					// If no amount was detected in the cropped region, that means that the amount is 1 as only amounts greater than 1 appear in the cropped region.
-					totalItemAmount = 1
-				} else {
-					for (block in it.textBlocks) {
-						totalItemAmount += try {
-							val detectedAmount: Int = block.text.toInt()
-							if (debugMode) {
-								MessageLog.printToLog("[DEBUG] Detected item amount: $detectedAmount", tag = tag)
-							}
+		// Crop the source bitmap to hold only the item amount for each of the items.
+		val croppedItemAmountBitmaps = itemLocations.map { itemAmountCropPool.crop(sourceBitmap, (it.x + 50).toInt(), (it.y).toInt() - 10) }
 
-							detectedAmount
-						} catch (e: NumberFormatException) {
-							1
-						}
-					}
-				}
-			}.addOnFailureListener {
-				MessageLog.printToLog("[ERROR] Failed to do text detection on bitmap.", tag = tag, isError = true)
-			}
-		}
+		// Read every crop at once and wait only until the last one finishes. Crops that could not be read count as 1.
+		val totalItemAmount = itemAmountReader.readAmounts(croppedItemAmountBitmaps).sumOf { it ?: 1 }
 
-		// Wait a few seconds for the asynchronous operations of Google's OCR to finish.
-		game.wait(3.0)
+		croppedItemAmountBitmaps.forEach { itemAmountCropPool.recycle(it) }
 
 		return totalItemAmount
 	}
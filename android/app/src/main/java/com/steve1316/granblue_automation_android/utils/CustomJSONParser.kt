@@ -265,6 +265,11 @@ class CustomJSONParser : JSONParser() {
 				putFloat("confidenceAll", androidObj.getDouble("confidenceAll").toFloat())
 				putFloat("customScale", androidObj.getDouble("customScale").toFloat())
 				putBoolean("enableTestForHomeScreen", androidObj.getBoolean("enableTestForHomeScreen"))
+				putBoolean("enablePyramidMatching", androidObj.getBoolean("enablePyramidMatching"))
+				putBoolean("enableBackgroundCapture", androidObj.getBoolean("enableBackgroundCapture"))
+				putBoolean("enableAdaptiveRetry", androidObj.getBoolean("enableAdaptiveRetry"))
+				putBoolean("enableOfflineDigitRecognition", androidObj.getBoolean("enableOfflineDigitRecognition"))
+				putBoolean("enableSessionRecording", androidObj.getBoolean("enableSessionRecording"))
 				commit()
 			}
 		} catch (_: Exception) {
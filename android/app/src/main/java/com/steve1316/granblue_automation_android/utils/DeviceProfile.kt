@@ -0,0 +1,274 @@
+package com.steve1316.granblue_automation_android.utils
+
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import org.opencv.core.Point
+import java.io.File
+import java.io.IOException
+
+/**
+ * Everything that the bot learned about the screen of this device so that later runs do not have to rediscover it: the calibrated scale,
+ * where each template was last found, the locations of anchors such as the Join Room button and any confidences tuned for individual templates.
+ *
+ * Profiles are stored in a single versioned JSON file grouped by the display metrics so that a change in resolution or DPI automatically starts from an empty profile
+ * instead of reusing locations from another screen. The whole file is discarded if it was written by a different version of the format.
+ *
+ * The file looks like this:
+ * ```
+ * {
+ *   "version": 1,
+ *   "profiles": {
+ *     "1080x1920@420dpi": {
+ *       "scale": { "scale": 0.73, "confidence": 0.92, "template": "home" },
+ *       "regions": { "buttons/home": [x, y, width, height] },
+ *       "anchors": { "join_a_room": [x, y] },
+ *       "confidences": { "buttons/home": 0.85 }
+ *     }
+ *   }
+ * }
+ * ```
+ *
+ * @param file The JSON file to load from and save to.
+ * @param displayWidth Width of the display in pixels.
+ * @param displayHeight Height of the display in pixels.
+ * @param displayDPI Density of the display.
+ */
+class DeviceProfile(private val file: File, displayWidth: Int, displayHeight: Int, displayDPI: Int) {
+	private val tag: String = "${loggerTag}DeviceProfile"
+
+	companion object {
+		const val VERSION = 1
+	}
+
+	// Identifies the display metrics that the profile belongs to.
+	val deviceKey = "${displayWidth}x${displayHeight}@${displayDPI}dpi"
+
+	// The profile is saved at most once per this many milliseconds while the bot is running.
+	private val saveIntervalMilliseconds = 60000L
+
+	// The profiles of every other display so that they are preserved on save.
+	private var profiles = JSONObject()
+
+	private var calibration: ScaleCalibrator.Calibration? = null
+
+	// Bounding box consisting of (x, y, width, height) of the last match for each "folder/template" key.
+	private val regions: MutableMap<String, IntArray> = mutableMapOf()
+
+	private val anchors: MutableMap<String, Point> = mutableMapOf()
+
+	// Minimum scores for each "folder/template" key to use in place of the default confidence. These are tuned by hand inside the file for templates that are unreliable on this device.
+	private val confidences: MutableMap<String, Double> = mutableMapOf()
+
+	private var dirty = false
+	private var lastSaveTime = 0L
+
+	init {
+		load()
+	}
+
+	/**
+	 * Load the profile for these display metrics from the file.
+	 */
+	private fun load() {
+		if (!file.exists()) {
+			return
+		}
+
+		try {
+			val root = JSONObject(file.readText())
+			if (root.optInt("version") != VERSION) {
+				MessageLog.printToLog("[INFO] Discarding the device profiles as they were saved by version ${root.optInt("version")} instead of $VERSION.", tag)
+				return
+			}
+
+			profiles = root.getJSONObject("profiles")
+			val profileObj = profiles.optJSONObject(deviceKey)
+			if (profileObj == null) {
+				if (profiles.length() > 0) {
+					MessageLog.printToLog("[INFO] Starting a new device profile for $deviceKey as the display metrics do not match any of the saved profiles.", tag)
+				}
+
+				return
+			}
+
+			profileObj.optJSONObject("scale")?.let { scaleObj ->
+				calibration = ScaleCalibrator.Calibration(scaleObj.getDouble("scale"), scaleObj.getDouble("confidence"), scaleObj.getString("template"))
+			}
+
+			profileObj.optJSONObject("regions")?.let { regionsObj ->
+				regionsObj.keys().forEach { key ->
+					val regionArray = regionsObj.getJSONArray(key)
+					regions[key] = intArrayOf(regionArray.getInt(0), regionArray.getInt(1), regionArray.getInt(2), regionArray.getInt(3))
+				}
+			}
+
+			profileObj.optJSONObject("anchors")?.let { anchorsObj ->
+				anchorsObj.keys().forEach { name ->
+					val anchorArray = anchorsObj.getJSONArray(name)
+					anchors[name] = Point(anchorArray.getDouble(0), anchorArray.getDouble(1))
+				}
+			}
+
+			profileObj.optJSONObject("confidences")?.let { confidencesObj ->
+				confidencesObj.keys().forEach { key ->
+					confidences[key] = confidencesObj.getDouble(key)
+				}
+			}
+		} catch (e: JSONException) {
+			MessageLog.printToLog("[WARNING] Discarding the device profiles as they could not be parsed: ${e.message}", tag, isWarning = true)
+			profiles = JSONObject()
+			calibration = null
+			regions.clear()
+			anchors.clear()
+			confidences.clear()
+		} catch (e: IOException) {
+			MessageLog.printToLog("[WARNING] Failed to read the device profiles: ${e.message}", tag, isWarning = true)
+		}
+	}
+
+	/**
+	 * Get the calibrated scale.
+	 *
+	 * @return The Calibration or null if the scale has not been calibrated on these display metrics.
+	 */
+	@Synchronized
+	fun getCalibration(): ScaleCalibrator.Calibration? {
+		return calibration
+	}
+
+	/**
+	 * Replace the calibrated scale and save the profile right away as calibrating only happens on request.
+	 *
+	 * @param newCalibration The Calibration to keep.
+	 */
+	@Synchronized
+	fun setCalibration(newCalibration: ScaleCalibrator.Calibration) {
+		calibration = newCalibration
+		dirty = true
+		save()
+	}
+
+	/**
+	 * Get the bounding box of where the template was last found.
+	 *
+	 * @param key The "folder/template" key of the template.
+	 * @return The region consisting of (x, y, width, height) or null if the template has not been found on these display metrics before.
+	 */
+	@Synchronized
+	fun getRegion(key: String): IntArray? {
+		return regions[key]?.copyOf()
+	}
+
+	/**
+	 * Record where the template was found.
+	 *
+	 * @param key The "folder/template" key of the template.
+	 * @param region The region consisting of (x, y, width, height).
+	 */
+	@Synchronized
+	fun setRegion(key: String, region: IntArray) {
+		if (regions[key]?.contentEquals(region) == true) {
+			return
+		}
+
+		regions[key] = region.copyOf()
+		markChanged()
+	}
+
+	/**
+	 * Get the location of the anchor.
+	 *
+	 * @param name Name of the anchor.
+	 * @return The Point or null if the anchor has not been located on these display metrics before.
+	 */
+	@Synchronized
+	fun getAnchor(name: String): Point? {
+		return anchors[name]?.clone()
+	}
+
+	/**
+	 * Record the location of the anchor.
+	 *
+	 * @param name Name of the anchor.
+	 * @param location The Point of the anchor.
+	 */
+	@Synchronized
+	fun setAnchor(name: String, location: Point) {
+		if (anchors[name] == location) {
+			return
+		}
+
+		anchors[name] = location.clone()
+		markChanged()
+	}
+
+	/**
+	 * Forget the location of the anchor as it is no longer there.
+	 *
+	 * @param name Name of the anchor.
+	 */
+	@Synchronized
+	fun clearAnchor(name: String) {
+		if (anchors.remove(name) != null) {
+			markChanged()
+		}
+	}
+
+	/**
+	 * Get the confidence tuned for the template.
+	 *
+	 * @param key The "folder/template" key of the template.
+	 * @return The minimum score or null if the template uses the default confidence.
+	 */
+	@Synchronized
+	fun getConfidence(key: String): Double? {
+		return confidences[key]
+	}
+
+	/**
+	 * Flag the profile as changed and save it if it has not been saved for a while.
+	 */
+	private fun markChanged() {
+		dirty = true
+		if (System.currentTimeMillis() - lastSaveTime >= saveIntervalMilliseconds) {
+			save()
+		}
+	}
+
+	/**
+	 * Save the profile to the file if it has changed since the last save.
+	 */
+	@Synchronized
+	fun save() {
+		if (!dirty) {
+			return
+		}
+
+		val profileObj = JSONObject()
+		calibration?.let { current ->
+			profileObj.put("scale", JSONObject().put("scale", current.scale).put("confidence", current.confidence).put("template", current.templateName))
+		}
+
+		profileObj.put("regions", JSONObject().apply { regions.forEach { (key, region) -> put(key, JSONArray(region.toList())) } })
+		profileObj.put("anchors", JSONObject().apply { anchors.forEach { (name, location) -> put(name, JSONArray(listOf(location.x, location.y))) } })
+		profileObj.put("confidences", JSONObject().apply { confidences.forEach { (key, confidence) -> put(key, confidence) } })
+		profiles.put(deviceKey, profileObj)
+
+		try {
+			file.writeText(JSONObject().put("version", VERSION).put("profiles", profiles).toString())
+			dirty = false
+			lastSaveTime = System.currentTimeMillis()
+		} catch (e: IOException) {
+			MessageLog.printToLog("[WARNING] Failed to save the device profile: ${e.message}", tag, isWarning = true)
+		}
+	}
+
+	@Synchronized
+	override fun toString(): String {
+		val scaleText = calibration?.let { "scale ${it.scale} calibrated with ${it.templateName}" } ?: "no calibrated scale"
+		return "Profile for $deviceKey with $scaleText, ${regions.size} regions, ${anchors.size} anchors and ${confidences.size} tuned confidences"
+	}
+}
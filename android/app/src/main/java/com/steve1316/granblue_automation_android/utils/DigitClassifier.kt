@@ -0,0 +1,113 @@
+package com.steve1316.granblue_automation_android.utils
+
+/**
+ * Nearest-neighbour classifier for the binarized glyphs of single digits.
+ *
+ * It does not depend on Android or OpenCV so that it behaves the same everywhere. Prototypes of each digit are learned from amounts that were already read by another means.
+ *
+ * @param maxPrototypesPerDigit Number of prototypes to keep for each digit. The oldest one is replaced once this is reached. Defaults to 8.
+ * @param maxDistance Maximum number of differing pixels between a glyph and its nearest prototype for the glyph to be classified. Defaults to 10.
+ */
+class DigitClassifier(private val maxPrototypesPerDigit: Int = 8, private val maxDistance: Int = 10) {
+	companion object {
+		// Size that every glyph gets normalized to before being compared.
+		const val GLYPH_WIDTH = 8
+		const val GLYPH_HEIGHT = 12
+	}
+
+	private val prototypes: Array<MutableList<BooleanArray>> = Array(10) { mutableListOf() }
+
+	/**
+	 * Get the total number of prototypes that have been learned.
+	 */
+	val size: Int
+		get() = prototypes.sumOf { it.size }
+
+	/**
+	 * Classify the glyph as the digit of its nearest prototype.
+	 *
+	 * @param glyph Binarized glyph of GLYPH_WIDTH by GLYPH_HEIGHT pixels in row-major order.
+	 * @return The digit or null if no prototype is close enough.
+	 */
+	@Synchronized
+	fun classify(glyph: BooleanArray): Int? {
+		var bestDigit: Int? = null
+		var bestDistance = maxDistance + 1
+		prototypes.forEachIndexed { digit, digitPrototypes ->
+			digitPrototypes.forEach { prototype ->
+				val distance = distance(glyph, prototype)
+				if (distance < bestDistance) {
+					bestDigit = digit
+					bestDistance = distance
+				}
+			}
+		}
+
+		return bestDigit
+	}
+
+	/**
+	 * Learn the glyph as a prototype of the digit unless an identical prototype already exists.
+	 *
+	 * @param glyph Binarized glyph of GLYPH_WIDTH by GLYPH_HEIGHT pixels in row-major order.
+	 * @param digit The digit that the glyph shows.
+	 * @return True if the glyph was added as a new prototype.
+	 */
+	@Synchronized
+	fun learn(glyph: BooleanArray, digit: Int): Boolean {
+		val digitPrototypes = prototypes[digit]
+		if (digitPrototypes.any { it.contentEquals(glyph) }) {
+			return false
+		}
+
+		if (digitPrototypes.size >= maxPrototypesPerDigit) {
+			digitPrototypes.removeAt(0)
+		}
+
+		digitPrototypes.add(glyph.copyOf())
+		return true
+	}
+
+	/**
+	 * Encode every prototype as a string of 0s and 1s for each digit.
+	 *
+	 * @return List of the encoded prototypes for each digit from 0 to 9.
+	 */
+	@Synchronized
+	fun export(): List<List<String>> {
+		return prototypes.map { digitPrototypes -> digitPrototypes.map { prototype -> prototype.joinToString("") { if (it) "1" else "0" } } }
+	}
+
+	/**
+	 * Replace every prototype with the encoded ones. Encoded prototypes of the wrong size are skipped.
+	 *
+	 * @param encodedPrototypes List of the encoded prototypes for each digit from 0 to 9.
+	 */
+	@Synchronized
+	fun import(encodedPrototypes: List<List<String>>) {
+		prototypes.forEach { it.clear() }
+		encodedPrototypes.take(10).forEachIndexed { digit, digitPrototypes ->
+			digitPrototypes.filter { it.length == GLYPH_WIDTH * GLYPH_HEIGHT }.takeLast(maxPrototypesPerDigit).forEach { encoded ->
+				prototypes[digit].add(BooleanArray(encoded.length) { encoded[it] == '1' })
+			}
+		}
+	}
+
+	/**
+	 * Count the pixels that differ between the two glyphs.
+	 *
+	 * @param first The first glyph.
+	 * @param second The second glyph.
+	 * @return The number of differing pixels.
+	 */
+	private fun distance(first: BooleanArray, second: BooleanArray): Int {
+		var count = 0
+		for (index in first.indices) {
+			if (first[index] != second[index]) {
+				count += 1
+			}
+		}
+
+		return count
+	}
+}
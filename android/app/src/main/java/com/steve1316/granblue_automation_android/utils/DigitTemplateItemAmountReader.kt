@@ -0,0 +1,244 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.graphics.Bitmap
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import org.opencv.android.Utils
+import org.opencv.core.Mat
+import org.opencv.imgproc.Imgproc
+import java.io.File
+import java.io.IOException
+
+/**
+ * Reads the amounts of dropped items offline by splitting each binarized crop into glyphs and classifying them against digit prototypes learned on this device.
+ *
+ * Crops that cannot be read confidently are handed to the fallback reader and its answers are used to learn new prototypes, so the fallback is needed less and less over time.
+ * Prototypes are stored in a JSON file grouped by the device resolution as the size of the font depends on it.
+ *
+ * @param file The JSON file to load the prototypes from and save them to.
+ * @param deviceKey Identifies the device resolution that the prototypes belong to.
+ * @param fallback Reads the crops that could not be read offline.
+ * @param debugMode Whether or not to log each detected amount.
+ */
+class DigitTemplateItemAmountReader(private val file: File, private val deviceKey: String, private val fallback: ItemAmountReader, private val debugMode: Boolean) : ItemAmountReader {
+	private val tag: String = "${loggerTag}DigitTemplateItemAmountReader"
+
+	// Pixels brighter than this count as part of a glyph.
+	private val binaryThreshold = 130.0
+
+	// Columns of ink narrower or rows of ink shorter than these are treated as noise instead of glyphs.
+	private val minGlyphWidth = 2
+	private val minGlyphHeight = 6
+
+	// Glyphs shorter than this fraction of the tallest glyph in the crop are not digits, such as the "x" in front of the amount.
+	private val minDigitHeightRatio = 0.8
+
+	// Amounts never have more digits than this so anything more means the crop caught something else.
+	private val maxGlyphs = 4
+
+	private val classifier = DigitClassifier()
+
+	// The full contents of the file so that the prototypes of other resolutions are preserved on save.
+	private var root = JSONObject()
+
+	var offlineReads: Long = 0L
+		private set
+	var fallbackReads: Long = 0L
+		private set
+
+	init {
+		load()
+	}
+
+	override fun readAmounts(bitmaps: List<Bitmap>, timeoutMilliseconds: Long): List<Int?> {
+		val glyphsPerCrop = bitmaps.map { segment(it) }
+		val amounts = glyphsPerCrop.map { glyphs -> glyphs?.let { classify(it) } }.toMutableList()
+
+		val unreadIndices = amounts.indices.filter { amounts[it] == null }
+		offlineReads += bitmaps.size - unreadIndices.size
+		fallbackReads += unreadIndices.size
+
+		if (unreadIndices.isNotEmpty()) {
+			val fallbackAmounts = fallback.readAmounts(unreadIndices.map { bitmaps[it] }, timeoutMilliseconds)
+
+			var learned = false
+			unreadIndices.forEachIndexed { fallbackIndex, index ->
+				val amount = fallbackAmounts[fallbackIndex]
+				amounts[index] = amount
+				if (amount != null) {
+					glyphsPerCrop[index]?.let { learned = learn(it, amount) || learned }
+				}
+			}
+
+			if (learned) {
+				save()
+			}
+		}
+
+		if (debugMode) {
+			MessageLog.printToLog("[DEBUG] Read ${bitmaps.size - unreadIndices.size} of ${bitmaps.size} item amounts offline: $amounts", tag)
+		}
+
+		return amounts
+	}
+
+	/**
+	 * Classify every glyph of the crop.
+	 *
+	 * @param glyphs The glyphs of the crop from left to right.
+	 * @return The amount or null if the crop had no glyphs or one of them could not be classified.
+	 */
+	private fun classify(glyphs: List<BooleanArray>): Int? {
+		// The crop may have missed the amount entirely so let the fallback reader decide.
+		if (glyphs.isEmpty()) {
+			return null
+		}
+
+		var amount = 0
+		glyphs.forEach { glyph ->
+			val digit = classifier.classify(glyph) ?: return null
+			amount = (amount * 10) + digit
+		}
+
+		return amount
+	}
+
+	/**
+	 * Learn the glyphs of the crop as the digits of the amount that the fallback reader detected.
+	 *
+	 * @param glyphs The glyphs of the crop from left to right.
+	 * @param amount The amount that the fallback reader detected.
+	 * @return True if any new prototype was learned.
+	 */
+	private fun learn(glyphs: List<BooleanArray>, amount: Int): Boolean {
+		// An amount of 1 is also what the fallback reader reports when it detected no amount at all so it cannot be trusted as a label.
+		val digits = amount.toString()
+		if (amount < 2 || digits.length != glyphs.size) {
+			return false
+		}
+
+		var learned = false
+		glyphs.forEachIndexed { index, glyph ->
+			learned = classifier.learn(glyph, digits[index] - '0') || learned
+		}
+
+		return learned
+	}
+
+	/**
+	 * Binarize the crop and split it into the glyphs of the digits along the columns that have no ink.
+	 *
+	 * @param bitmap Crop of the region next to the item that holds its amount.
+	 * @return The glyphs of the digits from left to right normalized to the size of the classifier or null if the crop does not look like an amount.
+	 */
+	private fun segment(bitmap: Bitmap): List<BooleanArray>? {
+		val rgbaMat = Mat()
+		val grayMat = Mat()
+		Utils.bitmapToMat(bitmap, rgbaMat)
+		Imgproc.cvtColor(rgbaMat, grayMat, Imgproc.COLOR_RGBA2GRAY)
+		Imgproc.threshold(grayMat, grayMat, binaryThreshold, 255.0, Imgproc.THRESH_BINARY)
+
+		val width = grayMat.cols()
+		val height = grayMat.rows()
+		val pixels = ByteArray(width * height)
+		grayMat.get(0, 0, pixels)
+		rgbaMat.release()
+		grayMat.release()
+
+		fun isInk(x: Int, y: Int): Boolean = pixels[(y * width) + x].toInt() != 0
+
+		// Find the runs of columns that have any ink in them.
+		val columnRuns = arrayListOf<IntRange>()
+		var runStart = -1
+		for (x in 0..width) {
+			val hasInk = x < width && (0 until height).any { y -> isInk(x, y) }
+			if (hasInk && runStart == -1) {
+				runStart = x
+			} else if (!hasInk && runStart != -1) {
+				if (x - runStart >= minGlyphWidth) {
+					columnRuns.add(runStart until x)
+				}
+
+				runStart = -1
+			}
+		}
+
+		// Bounding box consisting of (x, y, width, height) of each glyph.
+		val boxes = arrayListOf<IntArray>()
+		for (columns in columnRuns) {
+			val rows = (0 until height).filter { y -> columns.any { x -> isInk(x, y) } }
+			if (rows.last() - rows.first() + 1 < minGlyphHeight) {
+				continue
+			}
+
+			boxes.add(intArrayOf(columns.first, rows.first(), columns.last - columns.first + 1, rows.last() - rows.first() + 1))
+		}
+
+		// Only keep the glyphs that are as tall as digits so that the "x" in front of the amount is neither classified nor learned as one.
+		val digitHeight = boxes.maxOfOrNull { it[3] } ?: 0
+		val glyphs = boxes.filter { it[3] >= digitHeight * minDigitHeightRatio }.map { normalize(it[0], it[1], it[2], it[3], ::isInk) }
+
+		return if (glyphs.size > maxGlyphs) null else glyphs
+	}
+
+	/**
+	 * Sample the bounding box of the glyph down to the size of the classifier.
+	 *
+	 * @param left X coordinate of the bounding box.
+	 * @param top Y coordinate of the bounding box.
+	 * @param boxWidth Width of the bounding box.
+	 * @param boxHeight Height of the bounding box.
+	 * @param isInk Whether or not the pixel at the coordinates is part of a glyph.
+	 * @return The glyph of DigitClassifier.GLYPH_WIDTH by DigitClassifier.GLYPH_HEIGHT pixels in row-major order.
+	 */
+	private fun normalize(left: Int, top: Int, boxWidth: Int, boxHeight: Int, isInk: (Int, Int) -> Boolean): BooleanArray {
+		return BooleanArray(DigitClassifier.GLYPH_WIDTH * DigitClassifier.GLYPH_HEIGHT) { index ->
+			val x = left + (((index % DigitClassifier.GLYPH_WIDTH) * 2 + 1) * boxWidth) / (DigitClassifier.GLYPH_WIDTH * 2)
+			val y = top + (((index / DigitClassifier.GLYPH_WIDTH) * 2 + 1) * boxHeight) / (DigitClassifier.GLYPH_HEIGHT * 2)
+			isInk(x, y)
+		}
+	}
+
+	/**
+	 * Load the prototypes for this device resolution from the file.
+	 */
+	private fun load() {
+		if (!file.exists()) {
+			return
+		}
+
+		try {
+			root = JSONObject(file.readText())
+			val deviceArray = root.optJSONArray(deviceKey) ?: return
+			classifier.import((0 until deviceArray.length()).map { digit ->
+				val digitArray = deviceArray.getJSONArray(digit)
+				(0 until digitArray.length()).map { digitArray.getString(it) }
+			})
+		} catch (e: JSONException) {
+			MessageLog.printToLog("[WARNING] Discarding the digit prototypes as they could not be parsed: ${e.message}", tag, isWarning = true)
+			root = JSONObject()
+		} catch (e: IOException) {
+			MessageLog.printToLog("[WARNING] Failed to read the digit prototypes: ${e.message}", tag, isWarning = true)
+		}
+	}
+
+	/**
+	 * Save the prototypes to the file.
+	 */
+	private fun save() {
+		root.put(deviceKey, JSONArray(classifier.export().map { JSONArray(it) }))
+
+		try {
+			file.writeText(root.toString())
+		} catch (e: IOException) {
+			MessageLog.printToLog("[WARNING] Failed to save the digit prototypes: ${e.message}", tag, isWarning = true)
+		}
+	}
+
+	override fun toString(): String {
+		return "${classifier.size} digit prototypes for $deviceKey with $offlineReads amounts read offline and $fallbackReads read by the fallback"
+	}
+}
@@ -0,0 +1,111 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Core
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+
+/**
+ * Remembers the result of a query together with a thumbnail of the region it watched so that the result can be reused while that region stays unchanged.
+ *
+ * The thumbnail keeps a cell for every few pixels of the region and the region only counts as unchanged if no single cell changed noticeably
+ * as a button appearing over a small part of the region would otherwise be averaged away.
+ *
+ * @param K Type of the query key.
+ * @param V Type of the query result.
+ */
+class FrameChangeDetector<K, V> {
+	/**
+	 * Wraps the remembered result so that null results can be reused as well.
+	 *
+	 * @property value The result of the query.
+	 */
+	data class Cached<V>(val value: V)
+
+	private class Entry<V>(val region: List<Int>, val thumbnailMat: Mat, val value: V, val maxReuses: Int, var reuses: Int)
+
+	// Absolute difference in gray levels that any single cell of the thumbnails may have for the region to count as unchanged.
+	private val maxCellDifference = 12.0
+
+	// Number of pixels along each side of the region that make up a single cell of the thumbnail along with the bounds of the thumbnail size.
+	private val pixelsPerCell = 4
+	private val minThumbnailSize = 8
+	private val maxThumbnailSize = 64
+
+	private val entries: MutableMap<K, Entry<V>> = mutableMapOf()
+
+	var reuses: Long = 0L
+		private set
+
+	/**
+	 * Get the remembered result of the query if the watched region of the source Mat has not changed since then.
+	 *
+	 * @param key The query.
+	 * @param sourceMat Grayscale source Mat.
+	 * @param region The (x, y, width, height) region that the query watches.
+	 * @return The remembered result or null if the query needs to be performed again.
+	 */
+	@Synchronized
+	fun getIfUnchanged(key: K, sourceMat: Mat, region: IntArray): Cached<V>? {
+		val entry = entries[key] ?: return null
+		if (entry.region != region.toList() || entry.reuses >= entry.maxReuses) {
+			return null
+		}
+
+		val thumbnailMat = createThumbnail(sourceMat, region)
+		val differenceMat = Mat()
+		Core.absdiff(thumbnailMat, entry.thumbnailMat, differenceMat)
+		val maxDifference = Core.minMaxLoc(differenceMat).maxVal
+		differenceMat.release()
+		thumbnailMat.release()
+
+		if (maxDifference > maxCellDifference) {
+			return null
+		}
+
+		entry.reuses += 1
+		reuses += 1
+		return Cached(entry.value)
+	}
+
+	/**
+	 * Remember the result of the query along with the current state of its watched region.
+	 *
+	 * @param key The query.
+	 * @param sourceMat Grayscale source Mat that the query was performed on.
+	 * @param region The (x, y, width, height) region that the query watches.
+	 * @param value The result of the query.
+	 * @param maxReuses Number of times in a row that the result may be reused before the query has to be performed again. Defaults to 15.
+	 */
+	@Synchronized
+	fun put(key: K, sourceMat: Mat, region: IntArray, value: V, maxReuses: Int = 15) {
+		entries.put(key, Entry(region.toList(), createThumbnail(sourceMat, region), value, maxReuses, 0))?.thumbnailMat?.release()
+	}
+
+	/**
+	 * Forget every remembered result.
+	 */
+	@Synchronized
+	fun clear() {
+		entries.values.forEach { it.thumbnailMat.release() }
+		entries.clear()
+	}
+
+	/**
+	 * Downscale the region of the source Mat into a small thumbnail.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param region The (x, y, width, height) region to downscale.
+	 * @return The thumbnail Mat.
+	 */
+	private fun createThumbnail(sourceMat: Mat, region: IntArray): Mat {
+		val rect = TemplateMatcher.toRect(sourceMat, region)
+		val regionMat = sourceMat.submat(rect)
+		val thumbnailMat = Mat()
+		val thumbnailWidth = (rect.width / pixelsPerCell).coerceIn(minThumbnailSize, maxThumbnailSize).toDouble()
+		val thumbnailHeight = (rect.height / pixelsPerCell).coerceIn(minThumbnailSize, maxThumbnailSize).toDouble()
+		Imgproc.resize(regionMat, thumbnailMat, Size(thumbnailWidth, thumbnailHeight), 0.0, 0.0, Imgproc.INTER_AREA)
+		regionMat.release()
+		return thumbnailMat
+	}
+}
@@ -0,0 +1,158 @@
+package com.steve1316.granblue_automation_android.utils
+
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import org.opencv.core.Mat
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Captures screenshots on a background thread into a small ring of timestamped frames so that capturing overlaps with matching.
+ *
+ * The thread is started on the first request and stops by itself once no frames have been requested for a while so that it never outlives the bot.
+ *
+ * @param capture Captures a new grayscale screenshot.
+ * @param recycle Gives the Mat of a frame back once no one is using it anymore.
+ * @param capacity Number of frames in the ring. Defaults to 3.
+ * @param idleTimeoutMilliseconds Stop capturing after no frames have been requested for this long. Defaults to 2 seconds.
+ * @param frameIntervalMilliseconds Minimum time between the start of two captures. Defaults to 50 milliseconds.
+ */
+class FrameProducer(
+	private val capture: () -> Mat, private val recycle: (Mat) -> Unit, private val capacity: Int = 3, private val idleTimeoutMilliseconds: Long = 2000L,
+	private val frameIntervalMilliseconds: Long = 50L
+) {
+	private val tag: String = "${loggerTag}FrameProducer"
+
+	/**
+	 * A captured screenshot that is reference counted between the ring and everyone who took it from the ring.
+	 *
+	 * @property mat The grayscale screenshot.
+	 * @property timestamp Value of System.nanoTime() right before the screenshot was requested.
+	 */
+	class Frame(val mat: Mat, val timestamp: Long, private val recycle: (Mat) -> Unit) {
+		// Starts at 1 for the reference held by the ring.
+		private val references = AtomicInteger(1)
+
+		/**
+		 * Take a reference to the frame unless it has already been given back.
+		 *
+		 * @return True if the reference was taken and release() must be called later. False if the frame is no longer usable.
+		 */
+		fun tryRetain(): Boolean {
+			while (true) {
+				val count = references.get()
+				if (count == 0) {
+					return false
+				}
+
+				if (references.compareAndSet(count, count + 1)) {
+					return true
+				}
+			}
+		}
+
+		/**
+		 * Give back a reference to the frame. The Mat is recycled once the last reference is given back.
+		 */
+		fun release() {
+			if (references.decrementAndGet() == 0) {
+				recycle(mat)
+			}
+		}
+	}
+
+	private val ring = AtomicReferenceArray<Frame?>(capacity)
+
+	// Number of frames published so far. The newest frame lives at (published - 1) % capacity.
+	private val published = AtomicLong(0L)
+
+	@Volatile
+	private var thread: Thread? = null
+
+	@Volatile
+	private var lastRequestTime = 0L
+
+	/**
+	 * Get the newest frame that was requested after the specified timestamp, waiting for the capture thread if there is none yet.
+	 *
+	 * @param timestamp Value of System.nanoTime() that the frame needs to be newer than.
+	 * @param timeoutMilliseconds Give up after waiting this long.
+	 * @return The frame which must be given back with release() or null if none arrived in time.
+	 */
+	fun latestFrameNewerThan(timestamp: Long, timeoutMilliseconds: Long): Frame? {
+		val deadline = System.nanoTime() + (timeoutMilliseconds * 1_000_000L)
+		while (System.nanoTime() < deadline) {
+			// Checked on every pass in case the thread was in the middle of stopping due to being idle.
+			lastRequestTime = System.currentTimeMillis()
+			ensureRunning()
+
+			val count = published.get()
+			if (count > 0) {
+				val frame = ring.get(((count - 1) % capacity).toInt())
+				if (frame != null && frame.timestamp > timestamp && frame.tryRetain()) {
+					return frame
+				}
+			}
+
+			LockSupport.parkNanos(1_000_000L)
+		}
+
+		return null
+	}
+
+	/**
+	 * Start the capture thread if it is not running.
+	 */
+	@Synchronized
+	private fun ensureRunning() {
+		if (thread?.isAlive == true) {
+			return
+		}
+
+		thread = Thread({ run() }, tag).apply {
+			isDaemon = true
+			start()
+		}
+	}
+
+	/**
+	 * Keep capturing frames into the ring until no frames have been requested for a while.
+	 */
+	private fun run() {
+		try {
+			while (System.currentTimeMillis() - lastRequestTime < idleTimeoutMilliseconds) {
+				// Timestamp the frame before it is requested so that it never counts as newer than something that happened while it was being captured.
+				val timestamp = System.nanoTime()
+				val frame = Frame(capture(), timestamp, recycle)
+
+				val index = (published.get() % capacity).toInt()
+				val oldFrame = ring.getAndSet(index, frame)
+				published.incrementAndGet()
+				oldFrame?.release()
+
+				// Do not capture faster than the frame interval as the screen would not have changed in the meantime anyways.
+				val remainingNanoseconds = (frameIntervalMilliseconds * 1_000_000L) - (System.nanoTime() - timestamp)
+				if (remainingNanoseconds > 0) {
+					LockSupport.parkNanos(remainingNanoseconds)
+				}
+			}
+		} catch (e: Exception) {
+			MessageLog.printToLog("[WARNING] Background screenshot capture stopped: ${e.message}", tag, isWarning = true)
+		} finally {
+			clear()
+		}
+	}
+
+	/**
+	 * Give back every frame held by the ring.
+	 */
+	private fun clear() {
+		for (index in 0 until capacity) {
+			ring.getAndSet(index, null)?.release()
+		}
+
+		published.set(0L)
+	}
+}
@@ -0,0 +1,109 @@
+package com.steve1316.granblue_automation_android.utils
+
+import com.steve1316.automation_library.utils.MyAccessibilityService
+
+/**
+ * Performs the gestures of the bot on the device.
+ */
+interface GestureDriver {
+	/**
+	 * Tap the location.
+	 *
+	 * @param x X coordinate of the location.
+	 * @param y Y coordinate of the location.
+	 * @param imageName File name of the template that was tapped, used to randomize the tap inside its bounds.
+	 * @param longPress Whether or not to hold the tap. Defaults to false.
+	 * @param taps Number of times to tap. Defaults to 1.
+	 * @return True if the tap was performed.
+	 */
+	fun tap(x: Double, y: Double, imageName: String, longPress: Boolean = false, taps: Int = 1): Boolean
+
+	/**
+	 * Swipe from the old location to the new location.
+	 *
+	 * @param oldX X coordinate of the start of the swipe.
+	 * @param oldY Y coordinate of the start of the swipe.
+	 * @param newX X coordinate of the end of the swipe.
+	 * @param newY Y coordinate of the end of the swipe.
+	 * @param duration How long the swipe takes in milliseconds. Defaults to 500 milliseconds.
+	 * @return True if the swipe was performed.
+	 */
+	fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long = 500L): Boolean
+
+	/**
+	 * Scroll the screen.
+	 *
+	 * @param scrollDown Whether to scroll down or up. Defaults to down.
+	 * @param duration How long the scroll takes in milliseconds. Defaults to 500 milliseconds.
+	 * @return True if the scroll was performed.
+	 */
+	fun scroll(scrollDown: Boolean = true, duration: Long = 500L): Boolean
+
+	/**
+	 * Perform the gestures on the device through the Accessibility Service.
+	 *
+	 * @param service The running Accessibility Service.
+	 */
+	class Accessibility(private val service: MyAccessibilityService) : GestureDriver {
+		override fun tap(x: Double, y: Double, imageName: String, longPress: Boolean, taps: Int): Boolean {
+			return service.tap(x, y, imageName, longPress = longPress, taps = taps)
+		}
+
+		override fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long): Boolean {
+			return service.swipe(oldX, oldY, newX, newY, duration = duration)
+		}
+
+		override fun scroll(scrollDown: Boolean, duration: Long): Boolean {
+			return service.scroll(scrollDown = scrollDown, duration = duration)
+		}
+	}
+
+	/**
+	 * Record every gesture into the session before performing it with the driver.
+	 *
+	 * @param driver Performs the gestures.
+	 * @param recorder Records the gestures.
+	 */
+	class Recorded(private val driver: GestureDriver, private val recorder: SessionRecorder) : GestureDriver {
+		override fun tap(x: Double, y: Double, imageName: String, longPress: Boolean, taps: Int): Boolean {
+			recorder.recordGesture("tap", x, y, imageName)
+			return driver.tap(x, y, imageName, longPress = longPress, taps = taps)
+		}
+
+		override fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long): Boolean {
+			recorder.recordGesture("swipe", oldX.toDouble(), oldY.toDouble(), "$newX,$newY")
+			return driver.swipe(oldX, oldY, newX, newY, duration = duration)
+		}
+
+		override fun scroll(scrollDown: Boolean, duration: Long): Boolean {
+			recorder.recordGesture("scroll", 0.0, 0.0, if (scrollDown) "down" else "up")
+			return driver.scroll(scrollDown = scrollDown, duration = duration)
+		}
+	}
+
+	/**
+	 * Notify after every gesture performed with the driver as the screen is expected to change afterwards.
+	 *
+	 * @param driver Performs the gestures.
+	 * @param onGesture Called after each gesture, such as to discard the frame shared by the current tick.
+	 */
+	class Invalidating(private val driver: GestureDriver, private val onGesture: () -> Unit) : GestureDriver {
+		override fun tap(x: Double, y: Double, imageName: String, longPress: Boolean, taps: Int): Boolean {
+			val result = driver.tap(x, y, imageName, longPress = longPress, taps = taps)
+			onGesture()
+			return result
+		}
+
+		override fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long): Boolean {
+			val result = driver.swipe(oldX, oldY, newX, newY, duration = duration)
+			onGesture()
+			return result
+		}
+
+		override fun scroll(scrollDown: Boolean, duration: Long): Boolean {
+			val result = driver.scroll(scrollDown = scrollDown, duration = duration)
+			onGesture()
+			return result
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.graphics.Bitmap
+
+/**
+ * Reads the amounts of dropped items from crops of the region next to each item on the Loot Collected screen.
+ */
+interface ItemAmountReader {
+	/**
+	 * Detect the amount inside each of the crops.
+	 *
+	 * @param bitmaps Crops of the region next to each item that holds its amount.
+	 * @param timeoutMilliseconds Stop waiting for the crops that have not finished after this long. Defaults to 2 seconds.
+	 * @return The amount for each crop in the same order or null for the crops that could not be read, such as when the OCR failed or timed out.
+	 */
+	fun readAmounts(bitmaps: List<Bitmap>, timeoutMilliseconds: Long = 2000L): List<Int?>
+}
@@ -0,0 +1,80 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.graphics.Bitmap
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+import com.google.mlkit.vision.common.InputImage
+import com.google.mlkit.vision.text.Text
+import com.google.mlkit.vision.text.TextRecognizer
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Reads the amounts of dropped items by submitting every crop to Google's ML OCR at once and waiting for all of them to finish.
+ *
+ * @param textRecognizer The ML Kit client to perform the OCR with.
+ * @param debugMode Whether or not to log each detected amount.
+ */
+class MLKitItemAmountReader(private val textRecognizer: TextRecognizer, private val debugMode: Boolean) : ItemAmountReader {
+	private val tag: String = "${loggerTag}MLKitItemAmountReader"
+
+	override fun readAmounts(bitmaps: List<Bitmap>, timeoutMilliseconds: Long): List<Int?> {
+		if (bitmaps.isEmpty()) {
+			return listOf()
+		}
+
+		val tasks: List<Task<Text>> = bitmaps.map { textRecognizer.process(InputImage.fromBitmap(it, 0)) }
+
+		try {
+			Tasks.await(Tasks.whenAllComplete(tasks), timeoutMilliseconds, TimeUnit.MILLISECONDS)
+		} catch (e: TimeoutException) {
+			MessageLog.printToLog("[WARNING] Text detection did not finish for every item within ${timeoutMilliseconds}ms. Reporting the rest as unread.", tag, isWarning = true)
+		} catch (e: ExecutionException) {
+			MessageLog.printToLog("[ERROR] Failed to wait for text detection: ${e.message}", tag, isError = true)
+		}
+
+		// The tasks are only read from this thread after the wait so no synchronization is needed when adding up the results.
+		return tasks.map { task ->
+			when {
+				!task.isComplete -> null
+				!task.isSuccessful -> {
+					MessageLog.printToLog("[ERROR] Failed to do text detection on bitmap.", tag, isError = true)
+					null
+				}
+				else -> parseAmount(task.result)
+			}
+		}
+	}
+
+	/**
+	 * Add up the amounts in the detected text.
+	 *
+	 * @param text The result of the OCR.
+	 * @return The amount or 1 if no amount was detected as only amounts greater than 1 appear next to the item.
+	 */
+	private fun parseAmount(text: Text): Int {
+		if (text.textBlocks.isEmpty()) {
+			return 1
+		}
+
+		return text.textBlocks.sumOf { block ->
+			try {
+				val detectedAmount: Int = block.text.toInt()
+				if (debugMode) {
+					MessageLog.printToLog("[DEBUG] Detected item amount: $detectedAmount", tag)
+				}
+
+				detectedAmount
+			} catch (e: NumberFormatException) {
+				1
+			}
+		}
+	}
+
+	override fun toString(): String {
+		return "Google's ML OCR"
+	}
+}
@@ -0,0 +1,68 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Mat
+
+/**
+ * Pool of Mats that are handed out again once they have been recycled so that steady-state matching does not allocate new native buffers for every screenshot.
+ *
+ * @param maxPooled Maximum number of idle Mats to hold onto. Defaults to 8.
+ */
+class MatPool(private val maxPooled: Int = 8) {
+	private val idleMats = ArrayDeque<Mat>()
+
+	var allocations: Long = 0L
+		private set
+	var reuses: Long = 0L
+		private set
+
+	/**
+	 * Get a Mat of the specified size and type, reusing an idle one if possible.
+	 *
+	 * @param rows Number of rows.
+	 * @param cols Number of columns.
+	 * @param type OpenCV type of the Mat like CvType.CV_8UC1.
+	 * @return The Mat. Its contents are undefined and it should be given back with recycle() once it is no longer needed.
+	 */
+	@Synchronized
+	fun acquire(rows: Int, cols: Int, type: Int): Mat {
+		val index = idleMats.indexOfFirst { it.rows() == rows && it.cols() == cols && it.type() == type }
+		if (index != -1) {
+			reuses += 1
+			return idleMats.removeAt(index)
+		}
+
+		allocations += 1
+		return Mat(rows, cols, type)
+	}
+
+	/**
+	 * Give the Mat back to the pool. The oldest idle Mat is released if the pool is full.
+	 *
+	 * @param mat The Mat from acquire().
+	 */
+	@Synchronized
+	fun recycle(mat: Mat) {
+		if (mat.empty() || idleMats.any { it === mat }) {
+			return
+		}
+
+		if (idleMats.size >= maxPooled) {
+			idleMats.removeFirst().release()
+		}
+
+		idleMats.addLast(mat)
+	}
+
+	/**
+	 * Release every idle Mat.
+	 */
+	@Synchronized
+	fun clear() {
+		idleMats.forEach { it.release() }
+		idleMats.clear()
+	}
+
+	override fun toString(): String {
+		return "${idleMats.size} idle Mats with $allocations allocations and $reuses reuses"
+	}
+}
@@ -0,0 +1,125 @@
+package com.steve1316.granblue_automation_android.utils
+
+import java.io.File
+import java.util.Locale
+
+/**
+ * Keeps track of how long each kind of search took for each template, how many tries it actually needed and how often it found the template so that the regions and
+ * adjustment settings can be tuned from real numbers.
+ */
+class MatchMetrics {
+	// Upper bounds in milliseconds of each bucket of the latency histogram. The last bucket holds everything slower.
+	private val bucketBounds = longArrayOf(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000)
+
+	private inner class Entry(
+		var count: Int = 0, var found: Int = 0, var totalNanoseconds: Long = 0L, var maxNanoseconds: Long = 0L, var totalTries: Long = 0L, var maxTriesToFind: Int = 0,
+		var maxBudget: Int = 0, var bestConfidence: Double = 0.0, val histogram: IntArray = IntArray(bucketBounds.size + 1)
+	)
+
+	// Keyed by the operation and then the template name.
+	private val entries: MutableMap<Pair<String, String>, Entry> = mutableMapOf()
+
+	/**
+	 * Record the outcome of a search.
+	 *
+	 * @param operation Name of the kind of search such as "findButton".
+	 * @param templateName File name of the template image.
+	 * @param elapsedNanoseconds Time that the search took.
+	 * @param triesUsed Number of tries that were made. Defaults to 1.
+	 * @param tries Number of tries that were budgeted for the search. Defaults to 1.
+	 * @param found Whether or not the template was found. Defaults to true.
+	 * @param confidence Score of the match if the template was found. Defaults to none.
+	 */
+	@Synchronized
+	fun record(operation: String, templateName: String, elapsedNanoseconds: Long, triesUsed: Int = 1, tries: Int = 1, found: Boolean = true, confidence: Double? = null) {
+		val entry = entries.getOrPut(Pair(operation, templateName)) { Entry() }
+		entry.count += 1
+		entry.totalNanoseconds += elapsedNanoseconds
+		entry.maxNanoseconds = maxOf(entry.maxNanoseconds, elapsedNanoseconds)
+		entry.totalTries += triesUsed
+		entry.maxBudget = maxOf(entry.maxBudget, tries)
+		if (found) {
+			entry.found += 1
+			entry.maxTriesToFind = maxOf(entry.maxTriesToFind, triesUsed)
+		}
+
+		if (confidence != null) {
+			entry.bestConfidence = maxOf(entry.bestConfidence, confidence)
+		}
+
+		val elapsedMilliseconds = elapsedNanoseconds / 1_000_000L
+		val bucket = bucketBounds.indexOfFirst { elapsedMilliseconds < it }
+		entry.histogram[if (bucket == -1) bucketBounds.size else bucket] += 1
+	}
+
+	/**
+	 * Forget every recorded search.
+	 */
+	@Synchronized
+	fun clear() {
+		entries.clear()
+	}
+
+	/**
+	 * Estimate the latency below which the specified fraction of the searches finished from the histogram.
+	 *
+	 * @param entry The recorded searches.
+	 * @param fraction Fraction of the searches between 0.0 and 1.0.
+	 * @return The upper bound of the bucket in milliseconds or -1 if it is in the last bucket.
+	 */
+	private fun percentile(entry: Entry, fraction: Double): Long {
+		val target = entry.count * fraction
+		var seen = 0
+		entry.histogram.forEachIndexed { bucket, bucketCount ->
+			seen += bucketCount
+			if (seen >= target) {
+				return if (bucket < bucketBounds.size) bucketBounds[bucket] else -1L
+			}
+		}
+
+		return -1L
+	}
+
+	/**
+	 * Summarize the recorded searches with one line for each, starting with the ones that took the most time overall.
+	 *
+	 * @param limit Maximum number of lines. Defaults to 20.
+	 * @return The summary.
+	 */
+	@Synchronized
+	fun summary(limit: Int = 20): String {
+		val totalNanoseconds = entries.values.sumOf { it.totalNanoseconds }.coerceAtLeast(1L)
+		return entries.entries.sortedByDescending { it.value.totalNanoseconds }.take(limit).joinToString("\n") { (key, entry) ->
+			val p50 = percentile(entry, 0.5)
+			val p95 = percentile(entry, 0.95)
+			"${key.first} ${key.second}: ${entry.totalNanoseconds / 1_000_000L}ms total (${entry.totalNanoseconds * 100 / totalNanoseconds}%) over ${entry.count} calls, " +
+					"p50 <${if (p50 == -1L) "inf" else p50.toString()}ms, p95 <${if (p95 == -1L) "inf" else p95.toString()}ms, max ${entry.maxNanoseconds / 1_000_000L}ms, " +
+					"found ${entry.found}/${entry.count}, average tries ${"%.1f".format(Locale.US, entry.totalTries.toDouble() / entry.count)}, " +
+					"most tries needed to find ${entry.maxTriesToFind} out of a budget of ${entry.maxBudget}, best confidence ${"%.3f".format(Locale.US, entry.bestConfidence)}"
+		}
+	}
+
+	/**
+	 * Write every recorded search to a CSV file with one row each, including the counts of the latency histogram.
+	 *
+	 * @param file The CSV file to overwrite.
+	 */
+	@Synchronized
+	fun exportCsv(file: File) {
+		val header = listOf("operation", "template", "count", "found", "total_ms", "max_ms", "average_tries", "max_tries_to_find", "max_budget", "best_confidence") +
+				bucketBounds.map { "under_${it}ms" } + listOf("over_${bucketBounds.last()}ms")
+
+		val rows = entries.entries.sortedByDescending { it.value.totalNanoseconds }.map { (key, entry) ->
+			listOf(
+				key.first, "\"${key.second.replace("\"", "\"\"")}\"", entry.count, entry.found, entry.totalNanoseconds / 1_000_000L, entry.maxNanoseconds / 1_000_000L,
+				"%.2f".format(Locale.US, entry.totalTries.toDouble() / entry.count), entry.maxTriesToFind, entry.maxBudget, "%.3f".format(Locale.US, entry.bestConfidence)
+			).joinToString(",") + "," + entry.histogram.joinToString(",")
+		}
+
+		file.writeText((listOf(header.joinToString(",")) + rows).joinToString("\n") + "\n")
+	}
+
+	override fun toString(): String {
+		return summary()
+	}
+}
@@ -0,0 +1,75 @@
+package com.steve1316.granblue_automation_android.utils
+
+import kotlin.math.pow
+import kotlin.random.Random
+
+/**
+ * Decides how long to wait between each try of a template search and when to give up on it.
+ */
+interface RetryPolicy {
+	/**
+	 * Determine how long to wait before the next try.
+	 *
+	 * @param retry Number of tries that have been made so far, starting at 1.
+	 * @param tries Number of tries that the caller budgeted for the search.
+	 * @param elapsedMilliseconds Time since the first try started.
+	 * @param unchangedRetries Number of retries in a row where the region being searched did not change from the try before it.
+	 * @return Number of milliseconds to wait before the next try or null to give up.
+	 */
+	fun nextDelay(retry: Int, tries: Int, elapsedMilliseconds: Long, unchangedRetries: Int): Long?
+
+	/**
+	 * Wait the same amount of time between each try until the try budget runs out.
+	 *
+	 * @param delayMilliseconds Time to wait between each try.
+	 */
+	class Fixed(private val delayMilliseconds: Long) : RetryPolicy {
+		override fun nextDelay(retry: Int, tries: Int, elapsedMilliseconds: Long, unchangedRetries: Int): Long? {
+			return if (retry < tries) delayMilliseconds else null
+		}
+
+		override fun toString(): String {
+			return "Fixed(${delayMilliseconds}ms)"
+		}
+	}
+
+	/**
+	 * Wait exponentially longer between each try with some random jitter until either the try budget or a wall-clock deadline derived from it runs out.
+	 * Gives up early if the region being searched has stayed the same for several retries in a row as the template is not going to show up on a screen that is not changing.
+	 *
+	 * @param initialDelayMilliseconds Time to wait before the first retry. Defaults to 50 milliseconds.
+	 * @param multiplier Factor to grow the delay by after each retry. Defaults to 2.0.
+	 * @param maxDelayMilliseconds Upper bound of the delay. Defaults to 800 milliseconds.
+	 * @param jitter Fraction of the delay that gets randomly shaved off so that retries do not line up with periodic animations. Defaults to 0.5.
+	 * @param millisecondsPerTry Converts the try budget into the deadline. Defaults to 200 milliseconds which is roughly how long a single try took with a fixed delay.
+	 * @param maxUnchangedRetries Give up after this many retries in a row saw an unchanged region. Defaults to 6.
+	 */
+	class Backoff(
+		private val initialDelayMilliseconds: Long = 50L, private val multiplier: Double = 2.0, private val maxDelayMilliseconds: Long = 800L, private val jitter: Double = 0.5,
+		private val millisecondsPerTry: Long = 200L, private val maxUnchangedRetries: Int = 6
+	) : RetryPolicy {
+		override fun nextDelay(retry: Int, tries: Int, elapsedMilliseconds: Long, unchangedRetries: Int): Long? {
+			if (unchangedRetries >= maxUnchangedRetries) {
+				return null
+			}
+
+			// Never make more tries than budgeted so that a single try stays a single try even if the deadline has time left.
+			if (retry >= tries) {
+				return null
+			}
+
+			val remainingMilliseconds = (tries * millisecondsPerTry) - elapsedMilliseconds
+			if (remainingMilliseconds <= 0) {
+				return null
+			}
+
+			val delay = minOf(initialDelayMilliseconds * multiplier.pow(retry - 1), maxDelayMilliseconds.toDouble())
+			val jitteredDelay = (delay * (1.0 - (jitter * Random.nextDouble()))).toLong()
+			return minOf(jitteredDelay, remainingMilliseconds)
+		}
+
+		override fun toString(): String {
+			return "Backoff(${initialDelayMilliseconds}ms x$multiplier up to ${maxDelayMilliseconds}ms, ${millisecondsPerTry}ms per try)"
+		}
+	}
+}
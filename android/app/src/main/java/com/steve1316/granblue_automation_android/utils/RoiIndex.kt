@@ -0,0 +1,75 @@
+package com.steve1316.granblue_automation_android.utils
+
+/**
+ * Index of where each template was last found on this device so that searches can start from a small region instead of the full screenshot.
+ *
+ * Regions are kept inside the DeviceProfile so that they persist across runs and are never reused on another screen.
+ *
+ * @param profile The DeviceProfile that stores the regions.
+ */
+class RoiIndex(private val profile: DeviceProfile) {
+	var roiHits: Long = 0L
+		private set
+	var roiMisses: Long = 0L
+		private set
+
+	/**
+	 * Get the bounding box of where the template was last found.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @return The region consisting of (x, y, width, height) or null if the template has not been found on this device before.
+	 */
+	fun getRegion(folderName: String, templateName: String): IntArray? {
+		return profile.getRegion("$folderName/$templateName")
+	}
+
+	/**
+	 * Get the padded region to search first for the template.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @return The region consisting of (x, y, width, height) or null if the template has not been found on this device before.
+	 */
+	fun getSearchRegion(folderName: String, templateName: String): IntArray? {
+		val region = profile.getRegion("$folderName/$templateName") ?: return null
+
+		// Pad by half of the template in every direction so that small shifts in the layout are still caught.
+		val padding = maxOf(48, maxOf(region[2], region[3]) / 2)
+		return intArrayOf(region[0] - padding, region[1] - padding, region[2] + (padding * 2), region[3] + (padding * 2))
+	}
+
+	/**
+	 * Record whether the search inside the padded region found the template.
+	 *
+	 * @param found True if the template was found inside the region.
+	 */
+	@Synchronized
+	fun recordLookup(found: Boolean) {
+		if (found) {
+			roiHits += 1
+		} else {
+			roiMisses += 1
+		}
+	}
+
+	/**
+	 * Record where the template was found.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param centerX X coordinate of the center of the match.
+	 * @param centerY Y coordinate of the center of the match.
+	 * @param width Width of the scaled template.
+	 * @param height Height of the scaled template.
+	 */
+	fun record(folderName: String, templateName: String, centerX: Double, centerY: Double, width: Int, height: Int) {
+		profile.setRegion("$folderName/$templateName", intArrayOf((centerX - (width / 2)).toInt(), (centerY - (height / 2)).toInt(), width, height))
+	}
+
+	override fun toString(): String {
+		val lookups = roiHits + roiMisses
+		val hitRate = if (lookups > 0) roiHits * 100 / lookups else 0
+		return "$roiHits hits and $roiMisses full screenshot fallbacks ($hitRate% hit rate)"
+	}
+}
@@ -0,0 +1,201 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Mat
+import org.opencv.core.Point
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+import java.util.Locale
+import kotlin.math.abs
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Finds the scale that the templates need to be resized by to match the screen of this device by searching the scale space against a single screenshot.
+ *
+ * Every reference template is first scored across a coarse grid of scales against the most downscaled copy of the screenshot that still leaves the resized template large enough.
+ * The grid is spaced so that the edges of the template shift by no more than a couple of pixels between neighbouring scales as the score of wide templates such as headers
+ * drops off within a few hundredths of the true scale. The best coarse scale is then refined at full resolution with a golden-section search, only searching
+ * a small window around where the coarse pass found the template, and finally snapped to the two decimal places that the bot uses for its scales.
+ * The remaining references are skipped once one of them reaches the confidence at full resolution as small templates can score highly against the wrong thing when downscaled.
+ * The result is kept inside the DeviceProfile so that it can be reused on later runs.
+ *
+ * @param profile The DeviceProfile that stores the calibration.
+ * @param minScale Smallest scale to search. Defaults to 0.20.
+ * @param maxScale Largest scale to search. Defaults to 1.50.
+ */
+class ScaleCalibrator(private val profile: DeviceProfile, private val minScale: Double = 0.20, private val maxScale: Double = 1.50) {
+	/**
+	 * The outcome of a calibration.
+	 *
+	 * @property scale The best scale rounded to two decimal places.
+	 * @property confidence Score of the reference template at that scale.
+	 * @property templateName File name of the reference template that the scale was found with.
+	 */
+	data class Calibration(val scale: Double, val confidence: Double, val templateName: String)
+
+	// Widest spacing of the coarse grid, how far the edges of the template may shift between its scales, the factors to downscale the screenshot and templates by for it
+	// and the smallest coarse template that is still worth matching.
+	private val maxCoarseStep = 0.05
+	private val maxEdgeShift = 1.5
+	private val coarseFactors = listOf(0.25, 0.5)
+	private val minCoarseTemplateSize = 12
+
+	// The golden-section search stops once the bracket around the best scale is narrower than this.
+	private val tolerance = 0.005
+
+	val calibration: Calibration?
+		get() = profile.getCalibration()
+
+	// Number of times a template was matched during the last calibration.
+	var evaluations: Int = 0
+		private set
+
+	/**
+	 * Search for the scale at which any of the reference templates best matches the screenshot and save it if it reaches the confidence.
+	 *
+	 * @param sourceMat Grayscale screenshot.
+	 * @param references Grayscale reference templates at their original scale mapped by their file names. Only one of them needs to be on the screen.
+	 * @param confidence Minimum score required for the calibration to count.
+	 * @return The Calibration or null if none of the references reached the confidence at any scale.
+	 */
+	fun calibrate(sourceMat: Mat, references: Map<String, Mat>, confidence: Double): Calibration? {
+		evaluations = 0
+
+		val coarseSourceMats = coarseFactors.associateWith { factor ->
+			Mat().also { Imgproc.resize(sourceMat, it, Size(sourceMat.cols() * factor, sourceMat.rows() * factor), 0.0, 0.0, Imgproc.INTER_AREA) }
+		}
+
+		var best: Calibration? = null
+		for ((templateName, templateMat) in references) {
+			val candidate = calibrateReference(sourceMat, coarseSourceMats, templateName, templateMat) ?: continue
+			if (candidate.confidence > (best?.confidence ?: -1.0)) {
+				best = candidate
+			}
+
+			// Only one of the references needs to be on the screen.
+			if (candidate.confidence >= confidence) {
+				break
+			}
+		}
+
+		coarseSourceMats.values.forEach { it.release() }
+
+		if (best == null || best.confidence < confidence) {
+			return null
+		}
+
+		profile.setCalibration(best)
+		return best
+	}
+
+	/**
+	 * Find the scale at which the reference template best matches the screenshot.
+	 *
+	 * @param sourceMat Grayscale screenshot.
+	 * @param coarseSourceMats The screenshot downscaled by each of the coarse factors.
+	 * @param templateName File name of the reference template.
+	 * @param templateMat Grayscale reference template at its original scale.
+	 * @return The best scale along with its score at full resolution or null if the template does not fit at any scale.
+	 */
+	private fun calibrateReference(sourceMat: Mat, coarseSourceMats: Map<Double, Mat>, templateName: String, templateMat: Mat): Calibration? {
+		var bestCoarseScale = minScale
+		var bestCoarseStep = maxCoarseStep
+		var bestCoarseResult: TemplateMatcher.MatchResult? = null
+		var scale = minScale
+		while (scale <= maxScale + 1e-9) {
+			// Never go up to the full screenshot here as matching it for every scale is what makes a linear scan slow. The refinement corrects any imprecision.
+			val factor = coarseFactors.firstOrNull { minOf(templateMat.cols(), templateMat.rows()) * scale * it >= minCoarseTemplateSize } ?: coarseFactors.last()
+
+			// Bring the location of the coarse match back to the coordinates of the full screenshot.
+			val result = score(coarseSourceMats[factor]!!, templateMat, scale * factor)?.let { it.copy(location = Point(it.location.x / factor, it.location.y / factor)) }
+
+			// Going from this scale to the next one grows the template by its size times the step so half of that is how far each edge shifts.
+			val step = ((maxEdgeShift * 2) / (maxOf(templateMat.cols(), templateMat.rows()) * factor)).coerceIn(0.01, maxCoarseStep)
+
+			if (result != null && result.confidence > (bestCoarseResult?.confidence ?: -1.0)) {
+				bestCoarseScale = scale
+				bestCoarseStep = step
+				bestCoarseResult = result
+			}
+
+			scale += step
+		}
+
+		val center = bestCoarseResult?.location ?: return null
+
+		// Refine at full resolution between the neighbouring grid points as the score falls off on both sides of the true scale.
+		// Only the window that fits the template at the largest scale being refined around the coarse match is searched.
+		val maxRefinedScale = (bestCoarseScale + bestCoarseStep).coerceAtMost(maxScale)
+		val padding = (2 / coarseFactors.first()).toInt() + 8
+		val halfWidth = (templateMat.cols() * maxRefinedScale / 2).toInt() + padding
+		val halfHeight = (templateMat.rows() * maxRefinedScale / 2).toInt() + padding
+		val window = intArrayOf(center.x.toInt() - halfWidth, center.y.toInt() - halfHeight, halfWidth * 2, halfHeight * 2)
+
+		val scores = mutableMapOf<Double, Double>()
+		val scoreAt = { candidateScale: Double ->
+			scores.getOrPut((candidateScale * 1000).roundToInt() / 1000.0) { score(sourceMat, templateMat, candidateScale, window)?.confidence ?: -1.0 }
+		}
+
+		val goldenRatio = (sqrt(5.0) - 1) / 2
+		var low = (bestCoarseScale - bestCoarseStep).coerceAtLeast(minScale)
+		var high = maxRefinedScale
+		var left = high - (goldenRatio * (high - low))
+		var right = low + (goldenRatio * (high - low))
+		var leftScore = scoreAt(left)
+		var rightScore = scoreAt(right)
+		while (abs(high - low) > tolerance) {
+			if (leftScore >= rightScore) {
+				high = right
+				right = left
+				rightScore = leftScore
+				left = high - (goldenRatio * (high - low))
+				leftScore = scoreAt(left)
+			} else {
+				low = left
+				left = right
+				leftScore = rightScore
+				right = low + (goldenRatio * (high - low))
+				rightScore = scoreAt(right)
+			}
+		}
+
+		// Snap to the two decimal places that the scale settings use and keep whichever neighbour of the refined scale scores best.
+		val refined = ((low + high) / 2 * 100).roundToInt() / 100.0
+		val (bestScale, bestScore) = listOf(refined - 0.01, refined, refined + 0.01)
+			.map { (it * 100).roundToInt() / 100.0 }
+			.filter { it in minScale..maxScale }
+			.map { it to scoreAt(it) }
+			.maxByOrNull { it.second }!!
+
+		return Calibration(bestScale, bestScore, templateName)
+	}
+
+	/**
+	 * Resize the template by the scale and find its best match inside the region of the source.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param templateMat Grayscale template Mat at its original scale.
+	 * @param scale Scale to resize the template by.
+	 * @param region The region consisting of (x, y, width, height) to search. Defaults to (0, 0, 0, 0) which is equivalent to searching the full image.
+	 * @return The best MatchResult regardless of its score or null if the resized template does not fit inside the region.
+	 */
+	private fun score(sourceMat: Mat, templateMat: Mat, scale: Double, region: IntArray = intArrayOf(0, 0, 0, 0)): TemplateMatcher.MatchResult? {
+		val width = (templateMat.cols() * scale).roundToInt()
+		val height = (templateMat.rows() * scale).roundToInt()
+		if (width < 1 || height < 1) {
+			return null
+		}
+
+		val scaledMat = Mat()
+		Imgproc.resize(templateMat, scaledMat, Size(width.toDouble(), height.toDouble()), 0.0, 0.0, Imgproc.INTER_AREA)
+		val result = TemplateMatcher.match(sourceMat, scaledMat, "", region, confidence = -1.0)
+		scaledMat.release()
+		evaluations += 1
+		return result
+	}
+
+	override fun toString(): String {
+		val current = calibration ?: return "No scale calibrated for ${profile.deviceKey}"
+		return "Scale ${current.scale} calibrated for ${profile.deviceKey} with ${current.templateName} at ${"%.3f".format(Locale.US, current.confidence)} confidence"
+	}
+}
@@ -0,0 +1,137 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+
+/**
+ * Determines which screen the game is currently on by checking a set of headers in priority order against a single screenshot in one pass.
+ *
+ * Headers whose last known location on this device looks nothing like the header according to a difference hash are skipped without being template matched.
+ * This is only done when that location tightly bounds the header as the hash of a larger area says nothing about whether the header is somewhere inside it.
+ *
+ * @param templateProvider Returns the grayscale header template already scaled for this device or null if it does not exist.
+ * @param regionProvider Returns the (x, y, width, height) bounding box where the header was last found on this device or null if it has not been found before.
+ * @param matcher Template matches the header against the source Mat and returns the MatchResult or null if it was not found.
+ */
+class ScreenClassifier(
+	private val templateProvider: (headerName: String) -> Mat?,
+	private val regionProvider: (headerName: String) -> IntArray?,
+	private val matcher: (sourceMat: Mat, headerName: String) -> TemplateMatcher.MatchResult?
+) {
+	/**
+	 * Holds the result of a classification.
+	 *
+	 * @property screen Name of the first header in priority order that was found.
+	 * @property confidence Score of that header.
+	 * @property scores Score of every header that was matched up to and including that header.
+	 */
+	data class Classification(val screen: String, val confidence: Double, val scores: Map<String, Double>)
+
+	// Maximum number of differing bits out of 64 before the header is ruled out by the prefilter.
+	private val maxHashDistance = 20
+
+	// The last known location only counts as tight if it is no more than this many times the size of the header in each dimension.
+	private val maxRegionToTemplateRatio = 1.5
+
+	// Every this many consecutive skips, a header gets fully matched anyway in case it has moved away from its last known location.
+	private val maxConsecutiveSkips = 10
+
+	private val templateHashes: MutableMap<String, Long> = mutableMapOf()
+	private val templateSizes: MutableMap<String, Size> = mutableMapOf()
+	private val consecutiveSkips: MutableMap<String, Int> = mutableMapOf()
+
+	var prefilterSkips: Long = 0L
+		private set
+
+	/**
+	 * Check the headers against the source Mat in order and return the first one that was found.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param headerNames Names of the headers to check without the "_header" suffix in order of priority.
+	 * @return The Classification or null if none of the headers were found.
+	 */
+	@Synchronized
+	fun classify(sourceMat: Mat, headerNames: List<String>): Classification? {
+		val scores = mutableMapOf<String, Double>()
+
+		for (headerName in headerNames) {
+			val skips = consecutiveSkips[headerName] ?: 0
+			if (skips < maxConsecutiveSkips && isRuledOut(sourceMat, headerName)) {
+				consecutiveSkips[headerName] = skips + 1
+				prefilterSkips += 1
+				continue
+			}
+
+			consecutiveSkips[headerName] = 0
+
+			val result = matcher(sourceMat, headerName) ?: continue
+			scores[headerName] = result.confidence
+
+			// Several of these screens can be showing at the same time so the caller decides which one wins instead of the score.
+			return Classification(headerName, result.confidence, scores)
+		}
+
+		return null
+	}
+
+	/**
+	 * Compare the difference hash of the header against the area of the source Mat where it was last found.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param headerName Name of the header without the "_header" suffix.
+	 * @return True if the header is definitely not at its last known location. False if it could be there, it has no known location or that location is not tight around it.
+	 */
+	private fun isRuledOut(sourceMat: Mat, headerName: String): Boolean {
+		val region = regionProvider(headerName) ?: return false
+		val rect = TemplateMatcher.toRect(sourceMat, region)
+		if (rect.width != region[2] || rect.height != region[3] || (rect.width >= sourceMat.cols() && rect.height >= sourceMat.rows())) {
+			return false
+		}
+
+		if (!templateHashes.containsKey(headerName)) {
+			val templateMat = templateProvider(headerName) ?: return false
+			templateHashes[headerName] = differenceHash(templateMat)
+			templateSizes[headerName] = templateMat.size()
+		}
+
+		val templateSize = templateSizes[headerName]!!
+		if (rect.width > templateSize.width * maxRegionToTemplateRatio || rect.height > templateSize.height * maxRegionToTemplateRatio) {
+			return false
+		}
+
+		val templateHash = templateHashes[headerName]!!
+
+		val patchMat = sourceMat.submat(rect)
+		val patchHash = differenceHash(patchMat)
+		patchMat.release()
+
+		return java.lang.Long.bitCount(templateHash xor patchHash) > maxHashDistance
+	}
+
+	/**
+	 * Compute the 64-bit difference hash of the Mat by comparing horizontally adjacent pixels of a 9x8 thumbnail.
+	 *
+	 * @param mat Grayscale Mat.
+	 * @return The hash.
+	 */
+	private fun differenceHash(mat: Mat): Long {
+		val thumbnailMat = Mat()
+		Imgproc.resize(mat, thumbnailMat, Size(9.0, 8.0), 0.0, 0.0, Imgproc.INTER_AREA)
+
+		val pixels = ByteArray(72)
+		thumbnailMat.get(0, 0, pixels)
+		thumbnailMat.release()
+
+		var hash = 0L
+		for (y in 0 until 8) {
+			for (x in 0 until 8) {
+				val left = pixels[(y * 9) + x].toInt() and 0xFF
+				val right = pixels[(y * 9) + x + 1].toInt() and 0xFF
+				hash = (hash shl 1) or (if (left > right) 1L else 0L)
+			}
+		}
+
+		return hash
+	}
+}
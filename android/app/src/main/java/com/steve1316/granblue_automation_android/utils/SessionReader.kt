@@ -0,0 +1,270 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+import java.io.BufferedInputStream
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.util.zip.DataFormatException
+import java.util.zip.Inflater
+
+/**
+ * Reads back a session written by SessionRecorder so that its frames, match results and gestures can be replayed or benchmarked.
+ *
+ * Only the index of the records is kept in memory and the frames are decoded on demand. A segment that was cut short, such as when the app was killed mid-write,
+ * is read up to its last complete record.
+ *
+ * @param folder The folder of a single session that holds its segment files.
+ */
+class SessionReader(private val folder: File) {
+	/**
+	 * A recorded frame.
+	 *
+	 * @property elapsedMilliseconds Time since the recording started.
+	 * @property width Width of the frame.
+	 * @property height Height of the frame.
+	 * @property keyframe Whether the frame was stored in full instead of as the difference to the previous frame.
+	 */
+	data class FrameEntry(val elapsedMilliseconds: Long, val width: Int, val height: Int, val keyframe: Boolean) {
+		internal lateinit var file: File
+		internal var offset: Long = 0L
+		internal var length: Int = 0
+	}
+
+	/**
+	 * A recorded search.
+	 *
+	 * @property elapsedMilliseconds Time since the recording started.
+	 * @property operation Name of the kind of search such as "findButton".
+	 * @property templateName File name of the template image.
+	 * @property found Whether or not the template was found.
+	 * @property x X coordinate of the center of the match.
+	 * @property y Y coordinate of the center of the match.
+	 * @property confidence Score of the match.
+	 * @property frameIndex Index of the last frame recorded before the search or -1 if there was none.
+	 */
+	data class MatchEntry(
+		val elapsedMilliseconds: Long, val operation: String, val templateName: String, val found: Boolean, val x: Double, val y: Double, val confidence: Double, val frameIndex: Int
+	)
+
+	/**
+	 * A recorded gesture.
+	 *
+	 * @property elapsedMilliseconds Time since the recording started.
+	 * @property type One of "tap", "swipe" or "scroll".
+	 * @property x X coordinate of the tap or the start of the swipe.
+	 * @property y Y coordinate of the tap or the start of the swipe.
+	 * @property detail File name of the template for taps, the end of the swipe or the direction of the scroll.
+	 * @property frameIndex Index of the last frame recorded before the gesture or -1 if there was none.
+	 */
+	data class GestureEntry(val elapsedMilliseconds: Long, val type: String, val x: Double, val y: Double, val detail: String, val frameIndex: Int)
+
+	/**
+	 * Counts the bytes read so far so that the offset of each frame is known without seeking.
+	 */
+	private class CountingInputStream(input: InputStream) : FilterInputStream(input) {
+		var position = 0L
+			private set
+
+		override fun read(): Int {
+			val value = super.read()
+			if (value != -1) {
+				position += 1
+			}
+
+			return value
+		}
+
+		override fun read(b: ByteArray, off: Int, len: Int): Int {
+			val count = super.read(b, off, len)
+			if (count > 0) {
+				position += count
+			}
+
+			return count
+		}
+
+		override fun skip(n: Long): Long {
+			val count = super.skip(n)
+			position += count
+			return count
+		}
+	}
+
+	val frames: List<FrameEntry>
+	val matches: List<MatchEntry>
+	val gestures: List<GestureEntry>
+
+	// The frame that was decoded last so that reading the frames in order only applies one difference each.
+	private var lastDecodedIndex = -1
+	private var lastDecodedPixels: ByteArray? = null
+
+	init {
+		val segmentFiles = folder.listFiles { file -> file.extension == SessionRecorder.SEGMENT_EXTENSION }?.sortedBy { it.name }
+		if (segmentFiles.isNullOrEmpty()) {
+			throw Exception("There are no recorded segments inside ${folder.absolutePath}.")
+		}
+
+		val frameEntries = arrayListOf<FrameEntry>()
+		val matchEntries = arrayListOf<MatchEntry>()
+		val gestureEntries = arrayListOf<GestureEntry>()
+		segmentFiles.forEach { file -> readIndex(file, frameEntries, matchEntries, gestureEntries) }
+
+		frames = frameEntries
+		matches = matchEntries
+		gestures = gestureEntries
+	}
+
+	/**
+	 * Read the records of the segment into the index.
+	 *
+	 * @param file The segment file.
+	 * @param frameEntries Receives the frames.
+	 * @param matchEntries Receives the searches.
+	 * @param gestureEntries Receives the gestures.
+	 */
+	private fun readIndex(file: File, frameEntries: MutableList<FrameEntry>, matchEntries: MutableList<MatchEntry>, gestureEntries: MutableList<GestureEntry>) {
+		val counter = CountingInputStream(BufferedInputStream(FileInputStream(file), 64 * 1024))
+		DataInputStream(counter).use { input ->
+			if (input.readInt() != SessionRecorder.MAGIC || input.readInt() != SessionRecorder.VERSION) {
+				throw Exception("${file.absolutePath} is not a session segment that this version can read.")
+			}
+
+			input.readLong()
+
+			try {
+				while (true) {
+					val type = input.read()
+					if (type == -1) {
+						break
+					}
+
+					val elapsed = input.readLong()
+					when (type) {
+						SessionRecorder.RECORD_FRAME -> {
+							val entry = FrameEntry(elapsed, input.readInt(), input.readInt(), input.readBoolean())
+							entry.length = input.readInt()
+							entry.offset = counter.position
+							entry.file = file
+							input.skipBytes(entry.length).let { skipped -> if (skipped != entry.length) throw EOFException() }
+							frameEntries.add(entry)
+						}
+						SessionRecorder.RECORD_MATCH -> {
+							matchEntries.add(
+								MatchEntry(elapsed, input.readUTF(), input.readUTF(), input.readBoolean(), input.readDouble(), input.readDouble(), input.readDouble(), frameEntries.size - 1)
+							)
+						}
+						SessionRecorder.RECORD_GESTURE -> {
+							gestureEntries.add(GestureEntry(elapsed, input.readUTF(), input.readDouble(), input.readDouble(), input.readUTF(), frameEntries.size - 1))
+						}
+						else -> {
+							throw Exception("${file.absolutePath} has an unknown record type $type.")
+						}
+					}
+				}
+			} catch (e: EOFException) {
+				// The last record was cut short so everything before it is still usable.
+			}
+		}
+	}
+
+	/**
+	 * Decode the frame.
+	 *
+	 * @param index Index of the frame.
+	 * @return The grayscale Mat of the frame. It is owned by the caller.
+	 */
+	@Synchronized
+	fun readFrame(index: Int): Mat {
+		val entry = frames[index]
+		val pixels = decodePixels(index)
+		val frameMat = Mat(entry.height, entry.width, CvType.CV_8UC1)
+		frameMat.put(0, 0, pixels)
+		return frameMat
+	}
+
+	/**
+	 * Decode the pixels of the frame by starting from its keyframe, or the frame decoded last if that is closer, and applying the differences in order.
+	 *
+	 * @param index Index of the frame.
+	 * @return The grayscale pixels of the frame in row-major order.
+	 */
+	private fun decodePixels(index: Int): ByteArray {
+		var keyframeIndex = index
+		while (!frames[keyframeIndex].keyframe) {
+			keyframeIndex -= 1
+		}
+
+		var pixels: ByteArray
+		var nextIndex: Int
+		val lastPixels = lastDecodedPixels
+		if (lastPixels != null && lastDecodedIndex in keyframeIndex..index) {
+			pixels = lastPixels
+			nextIndex = lastDecodedIndex + 1
+		} else {
+			pixels = inflate(frames[keyframeIndex])
+			nextIndex = keyframeIndex + 1
+		}
+
+		while (nextIndex <= index) {
+			val difference = inflate(frames[nextIndex])
+			val previous = pixels
+			pixels = ByteArray(difference.size) { (previous[it] + difference[it]).toByte() }
+			nextIndex += 1
+		}
+
+		lastDecodedIndex = index
+		lastDecodedPixels = pixels
+		return pixels
+	}
+
+	/**
+	 * Read and decompress the stored payload of the frame.
+	 *
+	 * @param entry The frame.
+	 * @return The keyframe pixels or the difference to the previous frame.
+	 */
+	private fun inflate(entry: FrameEntry): ByteArray {
+		val compressed = ByteArray(entry.length)
+		RandomAccessFile(entry.file, "r").use { file ->
+			file.seek(entry.offset)
+			file.readFully(compressed)
+		}
+
+		val inflater = Inflater()
+		try {
+			inflater.setInput(compressed)
+			val pixels = ByteArray(entry.width * entry.height)
+			var length = 0
+			while (length < pixels.size && !inflater.finished()) {
+				val count = inflater.inflate(pixels, length, pixels.size - length)
+				if (count == 0 && inflater.needsInput()) {
+					break
+				}
+
+				length += count
+			}
+
+			if (length != pixels.size) {
+				throw IOException("The frame recorded at ${entry.elapsedMilliseconds}ms inside ${entry.file.absolutePath} is incomplete.")
+			}
+
+			return pixels
+		} catch (e: DataFormatException) {
+			throw IOException("The frame recorded at ${entry.elapsedMilliseconds}ms inside ${entry.file.absolutePath} is corrupted.", e)
+		} finally {
+			inflater.end()
+		}
+	}
+
+	override fun toString(): String {
+		val duration = listOfNotNull(frames.lastOrNull()?.elapsedMilliseconds, matches.lastOrNull()?.elapsedMilliseconds, gestures.lastOrNull()?.elapsedMilliseconds).maxOrNull() ?: 0L
+		return "${frames.size} frames, ${matches.size} matches and ${gestures.size} gestures over ${duration}ms from ${folder.name}"
+	}
+}
@@ -0,0 +1,319 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Mat
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.Deflater
+
+/**
+ * Records the frames that the bot saw along with its match results and gestures into append-only session files so that runs can be replayed and benchmarked later.
+ *
+ * Each frame is stored as the compressed difference to the previous frame with a full keyframe every so often and at the start of every segment file.
+ * Everything is written in order by a single background thread and frames are dropped instead of queued once it falls behind.
+ * Segment files are rotated once they grow past their size and the oldest segments of any session inside the root folder are deleted once they take up too much space.
+ *
+ * It only depends on OpenCV so that SessionReader can be used anywhere to read the sessions back.
+ *
+ * @param rootFolder The folder that holds a subfolder for each session.
+ * @param maxTotalBytes Total size of every session inside the root folder before the oldest segments get deleted. Defaults to 200MB.
+ * @param maxSegmentBytes Size of a segment file before a new one is started. Defaults to 16MB.
+ * @param keyframeInterval Number of frames between full keyframes. Defaults to 30.
+ * @param maxPendingFrames Number of frames waiting to be written before new frames get dropped. Defaults to 4.
+ */
+class SessionRecorder(
+	private val rootFolder: File, private val maxTotalBytes: Long = 200L * 1024 * 1024, private val maxSegmentBytes: Long = 16L * 1024 * 1024,
+	private val keyframeInterval: Int = 30, private val maxPendingFrames: Int = 4
+) {
+	companion object {
+		const val MAGIC = 0x47424153
+		const val VERSION = 1
+		const val SEGMENT_EXTENSION = "gbr"
+
+		const val RECORD_FRAME = 1
+		const val RECORD_MATCH = 2
+		const val RECORD_GESTURE = 3
+	}
+
+	private val startTime = System.nanoTime()
+	private val folder = File(rootFolder, "session_${System.currentTimeMillis()}")
+
+	// Only ever touched by the writer thread.
+	private val deflater = Deflater(Deflater.BEST_SPEED)
+	private var compressBuffer = ByteArray(0)
+	private var previousFrame: ByteArray? = null
+	private var previousWidth = 0
+	private var previousHeight = 0
+	private var framesSinceKeyframe = 0
+	private var segmentIndex = 0
+	private var segmentFile: File? = null
+	private var output: DataOutputStream? = null
+
+	private val writer: ExecutorService = Executors.newSingleThreadExecutor { runnable -> Thread(runnable, "SessionRecorder").apply { isDaemon = true } }
+	private val pendingFrames = AtomicInteger(0)
+
+	@Volatile
+	private var closed = false
+
+	@Volatile
+	var framesWritten: Long = 0L
+		private set
+
+	@Volatile
+	var framesDropped: Long = 0L
+		private set
+
+	@Volatile
+	var bytesWritten: Long = 0L
+		private set
+
+	// Recording stops after the first failed write and the reason is kept here.
+	@Volatile
+	var lastError: IOException? = null
+		private set
+
+	/**
+	 * Record the grayscale frame that the bot is about to match against.
+	 *
+	 * @param sourceMat Grayscale source Mat. Its pixels are copied before this returns.
+	 */
+	fun recordFrame(sourceMat: Mat) {
+		if (closed || lastError != null) {
+			return
+		}
+
+		if (pendingFrames.get() >= maxPendingFrames) {
+			framesDropped += 1
+			return
+		}
+
+		val width = sourceMat.cols()
+		val height = sourceMat.rows()
+		val pixels = ByteArray(width * height)
+		sourceMat.get(0, 0, pixels)
+
+		val elapsed = elapsedMilliseconds()
+		pendingFrames.incrementAndGet()
+		submit {
+			try {
+				writeFrame(elapsed, width, height, pixels)
+			} finally {
+				pendingFrames.decrementAndGet()
+			}
+		}
+	}
+
+	/**
+	 * Record the outcome of a search.
+	 *
+	 * @param operation Name of the kind of search such as "findButton".
+	 * @param templateName File name of the template image.
+	 * @param result The MatchResult or null if the template was not found.
+	 */
+	fun recordMatch(operation: String, templateName: String, result: TemplateMatcher.MatchResult?) {
+		val elapsed = elapsedMilliseconds()
+		submit {
+			val stream = openSegment()
+			stream.writeByte(RECORD_MATCH)
+			stream.writeLong(elapsed)
+			stream.writeUTF(operation)
+			stream.writeUTF(templateName)
+			stream.writeBoolean(result != null)
+			stream.writeDouble(result?.location?.x ?: 0.0)
+			stream.writeDouble(result?.location?.y ?: 0.0)
+			stream.writeDouble(result?.confidence ?: 0.0)
+		}
+	}
+
+	/**
+	 * Record a gesture that the bot performed.
+	 *
+	 * @param type One of "tap", "swipe" or "scroll".
+	 * @param x X coordinate of the tap or the start of the swipe.
+	 * @param y Y coordinate of the tap or the start of the swipe.
+	 * @param detail File name of the template for taps, the end of the swipe or the direction of the scroll.
+	 */
+	fun recordGesture(type: String, x: Double, y: Double, detail: String) {
+		val elapsed = elapsedMilliseconds()
+		submit {
+			val stream = openSegment()
+			stream.writeByte(RECORD_GESTURE)
+			stream.writeLong(elapsed)
+			stream.writeUTF(type)
+			stream.writeDouble(x)
+			stream.writeDouble(y)
+			stream.writeUTF(detail)
+		}
+	}
+
+	/**
+	 * Write everything that is still pending and close the current segment. Nothing gets recorded afterwards.
+	 */
+	fun close() {
+		if (closed) {
+			return
+		}
+
+		closed = true
+		writer.execute {
+			try {
+				output?.close()
+				if (output != null) {
+					bytesWritten += segmentFile?.length() ?: 0L
+				}
+			} catch (e: IOException) {
+				lastError = e
+			}
+
+			output = null
+			deflater.end()
+		}
+
+		writer.shutdown()
+		writer.awaitTermination(5, TimeUnit.SECONDS)
+	}
+
+	private fun elapsedMilliseconds(): Long {
+		return (System.nanoTime() - startTime) / 1_000_000L
+	}
+
+	/**
+	 * Run the write on the writer thread, flushing once nothing else is pending and rotating the segment if it grew too large.
+	 *
+	 * @param write The write to perform.
+	 */
+	private fun submit(write: () -> Unit) {
+		if (closed || lastError != null) {
+			return
+		}
+
+		try {
+			writer.execute {
+				if (lastError != null) {
+					return@execute
+				}
+
+				try {
+					write()
+					if (pendingFrames.get() == 0) {
+						output?.flush()
+					}
+
+					if (output != null && output!!.size() >= maxSegmentBytes) {
+						rotateSegment()
+					}
+				} catch (e: IOException) {
+					lastError = e
+				}
+			}
+		} catch (e: RejectedExecutionException) {
+			// The recorder was closed in the meantime.
+		}
+	}
+
+	/**
+	 * Write the frame as a keyframe or as the difference to the previous frame.
+	 *
+	 * @param elapsed Time since the recording started in milliseconds.
+	 * @param width Width of the frame.
+	 * @param height Height of the frame.
+	 * @param pixels Grayscale pixels of the frame in row-major order.
+	 */
+	private fun writeFrame(elapsed: Long, width: Int, height: Int, pixels: ByteArray) {
+		val stream = openSegment()
+		val previous = previousFrame
+		val keyframe = previous == null || width != previousWidth || height != previousHeight || framesSinceKeyframe >= keyframeInterval
+
+		// Subtracting the previous frame turns every unchanged pixel into a zero so that the mostly static screens of the game compress very well.
+		val payload = if (keyframe) {
+			pixels
+		} else {
+			ByteArray(pixels.size) { (pixels[it] - previous!![it]).toByte() }
+		}
+
+		if (compressBuffer.size < payload.size + 1024) {
+			compressBuffer = ByteArray(payload.size + 1024)
+		}
+
+		deflater.reset()
+		deflater.setInput(payload)
+		deflater.finish()
+		var compressedLength = 0
+		while (!deflater.finished()) {
+			if (compressedLength == compressBuffer.size) {
+				compressBuffer = compressBuffer.copyOf(compressBuffer.size * 2)
+			}
+
+			compressedLength += deflater.deflate(compressBuffer, compressedLength, compressBuffer.size - compressedLength)
+		}
+
+		stream.writeByte(RECORD_FRAME)
+		stream.writeLong(elapsed)
+		stream.writeInt(width)
+		stream.writeInt(height)
+		stream.writeBoolean(keyframe)
+		stream.writeInt(compressedLength)
+		stream.write(compressBuffer, 0, compressedLength)
+
+		previousFrame = pixels
+		previousWidth = width
+		previousHeight = height
+		framesSinceKeyframe = if (keyframe) 1 else framesSinceKeyframe + 1
+		framesWritten += 1
+	}
+
+	/**
+	 * Get the stream of the current segment, starting the first one if needed.
+	 *
+	 * @return The stream to write records to.
+	 */
+	private fun openSegment(): DataOutputStream {
+		output?.let { return it }
+
+		folder.mkdirs()
+		val file = File(folder, "segment_${segmentIndex.toString().padStart(4, '0')}.$SEGMENT_EXTENSION")
+		val stream = DataOutputStream(BufferedOutputStream(FileOutputStream(file), 64 * 1024))
+		stream.writeInt(MAGIC)
+		stream.writeInt(VERSION)
+		stream.writeLong(System.currentTimeMillis())
+
+		segmentFile = file
+		output = stream
+
+		// Every segment starts with a keyframe so that it can be read on its own after older segments get deleted.
+		previousFrame = null
+		return stream
+	}
+
+	/**
+	 * Close the current segment so that the next record starts a new one and delete the oldest segments if the sessions take up too much space.
+	 */
+	private fun rotateSegment() {
+		output?.close()
+		bytesWritten += segmentFile?.length() ?: 0L
+		output = null
+		segmentIndex += 1
+
+		val segments = rootFolder.walkTopDown().filter { it.isFile && it.extension == SEGMENT_EXTENSION }.sortedBy { it.lastModified() }.toMutableList()
+		var totalBytes = segments.sumOf { it.length() }
+		while (totalBytes > maxTotalBytes && segments.isNotEmpty()) {
+			val oldest = segments.removeAt(0)
+			totalBytes -= oldest.length()
+			oldest.delete()
+			oldest.parentFile?.takeIf { it != folder && it.list()?.isEmpty() == true }?.delete()
+		}
+	}
+
+	override fun toString(): String {
+		val currentBytes = output?.size()?.toLong() ?: 0L
+		return "Recorded $framesWritten frames ($framesDropped dropped) into ${bytesWritten + currentBytes} bytes at ${folder.absolutePath}" +
+				(lastError?.let { ", stopped after an error: ${it.message}" } ?: "")
+	}
+}
@@ -0,0 +1,179 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.content.res.AssetManager
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import org.json.JSONException
+import org.json.JSONObject
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Collections
+import java.util.WeakHashMap
+
+/**
+ * Loads the templates that the opt-in preprocessTemplates Gradle task already converted into raw grayscale pixels at build time so that they do not need to be decoded at runtime.
+ *
+ * The raw pixels of every variant are stored back to back in "templates/templates.bin" and "templates/manifest.json" records the folder, name, scale, size and offset of each.
+ * The bundle is stored compressed inside the APK to keep it small and is extracted once into the files directory. The copy is memory-mapped and each variant is handed out as a Mat
+ * that points straight into the mapping, so the pixels are only paged in by the OS when a template is actually matched and can be dropped again under memory pressure instead of living on the heap.
+ * If the bundle is missing, every template is reported as not found so that the caller falls back to decoding the image.
+ *
+ * @param assetManager The assets of the app.
+ * @param filesDir Folder to copy the bundle into if it cannot be mapped straight out of the APK.
+ */
+class TemplateBundle(private val assetManager: AssetManager, private val filesDir: File) {
+	private val tag: String = "${loggerTag}TemplateBundle"
+
+	/**
+	 * Where the pixels of a variant are stored.
+	 *
+	 * @property width Width of the variant.
+	 * @property height Height of the variant.
+	 * @property offset Offset of the first pixel inside the bundle.
+	 */
+	private data class Variant(val width: Int, val height: Int, val offset: Long)
+
+	private val variants: Map<TemplateCache.Key, Variant>
+
+	// Kept for as long as the bundle is in use as the mapping is unmapped once this gets garbage collected.
+	private var mappedBundle: MappedByteBuffer? = null
+
+	// Mats that point into the mapping instead of owning their pixels. Weakly held so that evicted templates can still be garbage collected.
+	private val mappedMats: MutableSet<Mat> = Collections.synchronizedSet(Collections.newSetFromMap(WeakHashMap()))
+
+	var mapped: Long = 0L
+		private set
+	var resized: Long = 0L
+		private set
+
+	init {
+		var manifestText = ""
+		variants = try {
+			manifestText = assetManager.open("templates/manifest.json").bufferedReader().use { it.readText() }
+			val templatesArray = JSONObject(manifestText).getJSONArray("templates")
+			(0 until templatesArray.length()).associate { index ->
+				val templateObject = templatesArray.getJSONObject(index)
+				TemplateCache.Key(templateObject.getString("folder"), templateObject.getString("name"), templateObject.getDouble("scale")) to
+						Variant(templateObject.getInt("width"), templateObject.getInt("height"), templateObject.getLong("offset"))
+			}
+		} catch (e: IOException) {
+			// The templates are only preprocessed when the app was built with the preprocessTemplates Gradle property enabled.
+			MessageLog.printToLog("[INFO] The templates were not preprocessed at build time so every template will be decoded from its image instead.", tag)
+			mapOf()
+		} catch (e: JSONException) {
+			MessageLog.printToLog("[WARNING] The manifest of the preprocessed templates could not be parsed so every template will be decoded from its image instead: ${e.message}", tag, isWarning = true)
+			mapOf()
+		}
+
+		if (variants.isNotEmpty()) {
+			mappedBundle = map(manifestText.hashCode())
+		}
+	}
+
+	/**
+	 * Map the bundle into memory, straight out of the APK if it is stored uncompressed or otherwise from a copy inside the files directory.
+	 *
+	 * @param manifestHash Hash of the manifest so that a copy left behind by a different version of the app is not reused.
+	 * @return The mapping or null if the bundle could not be mapped.
+	 */
+	private fun map(manifestHash: Int): MappedByteBuffer? {
+		try {
+			assetManager.openFd("templates/templates.bin").use { fileDescriptor ->
+				fileDescriptor.createInputStream().use { input ->
+					return input.channel.map(FileChannel.MapMode.READ_ONLY, fileDescriptor.startOffset, fileDescriptor.length)
+				}
+			}
+		} catch (e: IOException) {
+			// The bundle was compressed inside the APK so it needs to be extracted before it can be mapped.
+		}
+
+		val copyFile = File(filesDir, "templates_${Integer.toHexString(manifestHash)}.bin")
+		try {
+			if (!copyFile.exists()) {
+				filesDir.listFiles { file -> file.name.startsWith("templates_") && file.extension == "bin" }?.forEach { it.delete() }
+
+				val partialFile = File(filesDir, copyFile.name + ".partial")
+				assetManager.open("templates/templates.bin").use { input -> partialFile.outputStream().use { output -> input.copyTo(output) } }
+				if (!partialFile.renameTo(copyFile)) {
+					throw IOException("Failed to move the extracted bundle to ${copyFile.absolutePath}.")
+				}
+			}
+
+			RandomAccessFile(copyFile, "r").use { file ->
+				return file.channel.map(FileChannel.MapMode.READ_ONLY, 0L, file.length())
+			}
+		} catch (e: IOException) {
+			MessageLog.printToLog("[WARNING] Failed to map the preprocessed templates so every template will be decoded from its image instead: ${e.message}", tag, isWarning = true)
+			return null
+		}
+	}
+
+	/**
+	 * Load the template at the scale, resizing the variant at scale 1.0 if that scale was not preprocessed.
+	 *
+	 * A preprocessed scale is returned as a Mat that points into the read-only mapping and must never be written to. Use isMapped() to tell them apart.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param scale Scale to resize the template by.
+	 * @return The grayscale template Mat or null if the template is not inside the bundle.
+	 */
+	fun load(folderName: String, templateName: String, scale: Double): Mat? {
+		val bundle = mappedBundle ?: return null
+
+		variants[TemplateCache.Key(folderName, templateName, scale)]?.let { variant ->
+			mapped += 1
+			return wrap(bundle, variant)
+		}
+
+		val original = variants[TemplateCache.Key(folderName, templateName, 1.0)] ?: return null
+		val originalMat = wrap(bundle, original)
+
+		// Resize into a Mat of its own as the original is read-only.
+		val templateMat = Mat()
+		Imgproc.resize(originalMat, templateMat, Size(originalMat.cols() * scale, originalMat.rows() * scale), 0.0, 0.0, Imgproc.INTER_AREA)
+		mappedMats.remove(originalMat)
+		originalMat.release()
+		resized += 1
+		return templateMat
+	}
+
+	/**
+	 * Wrap the pixels of the variant inside the mapping as a Mat without copying them.
+	 *
+	 * @param bundle The mapping of the bundle.
+	 * @param variant The variant to wrap.
+	 * @return The grayscale Mat.
+	 */
+	private fun wrap(bundle: MappedByteBuffer, variant: Variant): Mat {
+		val pixels = bundle.duplicate()
+		pixels.position(variant.offset.toInt())
+		pixels.limit(variant.offset.toInt() + (variant.width * variant.height))
+
+		val templateMat = Mat(variant.height, variant.width, CvType.CV_8UC1, pixels.slice())
+		mappedMats.add(templateMat)
+		return templateMat
+	}
+
+	/**
+	 * Check whether the Mat points into the mapping instead of owning its pixels.
+	 *
+	 * @param mat The Mat to check.
+	 * @return True if the Mat came from the mapping.
+	 */
+	fun isMapped(mat: Mat): Boolean {
+		return mappedMats.contains(mat)
+	}
+
+	override fun toString(): String {
+		val mappedBytes = mappedBundle?.capacity() ?: 0
+		return "${variants.size} preprocessed template variants mapped into $mappedBytes bytes with $mapped handed out as is and $resized resized from the original scale"
+	}
+}
@@ -0,0 +1,127 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Mat
+
+/**
+ * Bounded LRU cache of decoded and already scaled grayscale template Mats so that each template only gets decoded from the assets once per scale.
+ * Templates that do not exist are remembered as well so that they are not looked up and reported again on every search.
+ *
+ * @param maxBytes Memory cap for all of the cached Mats combined in bytes. Defaults to 24MB.
+ * @param isMapped Whether the Mat points into a memory-mapped file instead of owning its pixels. Those are paged in and out by the OS so they do not count towards the memory cap.
+ * Defaults to none of them.
+ * @param loader Decodes and scales the template image. Returns null if the template does not exist.
+ */
+class TemplateCache(
+	private val maxBytes: Long = 24L * 1024L * 1024L, private val isMapped: (Mat) -> Boolean = { false }, private val loader: (folderName: String, templateName: String, scale: Double) -> Mat?
+) {
+	/**
+	 * Key of a cached template.
+	 */
+	data class Key(val folderName: String, val templateName: String, val scale: Double)
+
+	// Access-ordered so that iteration starts from the least recently used entry.
+	private val cache = LinkedHashMap<Key, Mat>(64, 0.75f, true)
+
+	// Templates that the loader could not find.
+	private val missing: MutableSet<Key> = mutableSetOf()
+
+	// Evicted Mats that another caller may still be matching against. They are released once releaseEvicted() is called.
+	private val evicted: MutableList<Mat> = mutableListOf()
+
+	var currentBytes: Long = 0L
+		private set
+	var hits: Long = 0L
+		private set
+	var misses: Long = 0L
+		private set
+	var evictions: Long = 0L
+		private set
+
+	/**
+	 * Fetch the template Mat from the cache, decoding it on a miss.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName File name of the template image.
+	 * @param scale Scale that the template was resized to.
+	 * @return The template Mat or null if it does not exist.
+	 */
+	@Synchronized
+	fun get(folderName: String, templateName: String, scale: Double): Mat? {
+		val key = Key(folderName, templateName, scale)
+		val cachedMat = cache[key]
+		if (cachedMat != null) {
+			hits += 1
+			return cachedMat
+		}
+
+		if (missing.contains(key)) {
+			hits += 1
+			return null
+		}
+
+		misses += 1
+		val templateMat = loader(folderName, templateName, scale)
+		if (templateMat == null) {
+			missing.add(key)
+			return null
+		}
+
+		cache[key] = templateMat
+		currentBytes += sizeOf(templateMat)
+		trimToSize()
+		return templateMat
+	}
+
+	/**
+	 * Evict the least recently used templates until the cache fits under the memory cap again. The newest entry is always kept.
+	 */
+	private fun trimToSize() {
+		val iterator = cache.entries.iterator()
+		while (currentBytes > maxBytes && cache.size > 1 && iterator.hasNext()) {
+			val entry = iterator.next()
+			currentBytes -= sizeOf(entry.value)
+			iterator.remove()
+			evictions += 1
+
+			// Another caller may still be matching against the evicted Mat so it is only released later. Mapped Mats do not own their pixels.
+			if (!isMapped(entry.value)) {
+				evicted.add(entry.value)
+			}
+		}
+	}
+
+	/**
+	 * Release the native memory of the evicted templates. Only call this while nothing is matching against templates from this cache.
+	 */
+	@Synchronized
+	fun releaseEvicted() {
+		evicted.forEach { it.release() }
+		evicted.clear()
+	}
+
+	/**
+	 * Remove all templates from the cache and release them. Only call this while nothing is matching against templates from this cache.
+	 */
+	@Synchronized
+	fun clear() {
+		cache.values.filterNot { isMapped(it) }.forEach { it.release() }
+		cache.clear()
+		missing.clear()
+		currentBytes = 0L
+		releaseEvicted()
+	}
+
+	private fun sizeOf(mat: Mat): Long {
+		if (isMapped(mat)) {
+			return 0L
+		}
+
+		return mat.total() * mat.elemSize()
+	}
+
+	override fun toString(): String {
+		val lookups = hits + misses
+		val hitRate = if (lookups > 0) hits * 100 / lookups else 0
+		return "${cache.size} templates cached (${missing.size} missing) using ${currentBytes / 1024}KB/${maxBytes / 1024}KB with $hits hits, $misses misses ($hitRate% hit rate) and $evictions evictions"
+	}
+}
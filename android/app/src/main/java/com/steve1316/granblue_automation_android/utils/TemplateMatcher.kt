@@ -0,0 +1,181 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.opencv.core.Core
+import org.opencv.core.Mat
+import org.opencv.core.Point
+import org.opencv.core.Rect
+import org.opencv.core.Scalar
+import org.opencv.imgproc.Imgproc
+
+/**
+ * Template matching routines that operate purely on grayscale OpenCV Mats so that they can be shared between the bot and anything running on the JVM.
+ */
+object TemplateMatcher {
+	/**
+	 * Holds the result of a successful template match.
+	 *
+	 * @property templateName File name of the template image that was matched.
+	 * @property location Center of the match in the coordinates of the full source image.
+	 * @property confidence Normalized correlation score of the match.
+	 */
+	data class MatchResult(val templateName: String, val location: Point, val confidence: Double)
+
+	// Each thread reuses its own result Mat so that matching does not allocate a new native buffer whenever the result is the same size as last time.
+	private val resultBuffer = object : ThreadLocal<Mat>() {
+		override fun initialValue(): Mat = Mat()
+	}
+
+	/**
+	 * Clamps the region consisting of (x, y, width, height) to the bounds of the source Mat.
+	 *
+	 * @param sourceMat The source Mat.
+	 * @param region The region to clamp. (0, 0, 0, 0) is equivalent to the full image.
+	 * @return The clamped region as a Rect.
+	 */
+	fun toRect(sourceMat: Mat, region: IntArray): Rect {
+		if (region.contentEquals(intArrayOf(0, 0, 0, 0))) {
+			return Rect(0, 0, sourceMat.cols(), sourceMat.rows())
+		}
+
+		val x = region[0].coerceIn(0, sourceMat.cols())
+		val y = region[1].coerceIn(0, sourceMat.rows())
+		val width = region[2].coerceIn(0, sourceMat.cols() - x)
+		val height = region[3].coerceIn(0, sourceMat.rows() - y)
+		return Rect(x, y, width, height)
+	}
+
+	/**
+	 * Computes the correlation map of the template against the region of the source Mat.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param templateMat Grayscale template Mat.
+	 * @param rect Region of the source Mat to search.
+	 * @return The result Mat of this thread that is overwritten by the next call or null if the template does not fit inside the region.
+	 */
+	private fun correlate(sourceMat: Mat, templateMat: Mat, rect: Rect): Mat? {
+		if (templateMat.empty() || rect.width < templateMat.cols() || rect.height < templateMat.rows()) {
+			return null
+		}
+
+		// A submat is only a view into the source so no pixels are copied here.
+		val searchMat = sourceMat.submat(rect)
+		val resultMat = resultBuffer.get()!!
+		Imgproc.matchTemplate(searchMat, templateMat, resultMat, Imgproc.TM_CCOEFF_NORMED)
+		searchMat.release()
+		return resultMat
+	}
+
+	/**
+	 * Finds the best match of the template inside the region of the source Mat.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param templateMat Grayscale template Mat that has already been scaled for the device.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source Mat to template match. Defaults to (0, 0, 0, 0) which is equivalent to searching the full image.
+	 * @param confidence Minimum score required for the match to count.
+	 * @return The MatchResult or null if the best score did not reach the confidence.
+	 */
+	fun match(sourceMat: Mat, templateMat: Mat, templateName: String, region: IntArray = intArrayOf(0, 0, 0, 0), confidence: Double): MatchResult? {
+		val rect = toRect(sourceMat, region)
+		val resultMat = correlate(sourceMat, templateMat, rect) ?: return null
+		val mmr: Core.MinMaxLocResult = Core.minMaxLoc(resultMat)
+
+		if (mmr.maxVal < confidence) {
+			return null
+		}
+
+		// Center the coordinates so that any tap gesture would be directed at the center of the match and readjust them to the full source image.
+		val location = Point(rect.x + mmr.maxLoc.x + (templateMat.cols() / 2), rect.y + mmr.maxLoc.y + (templateMat.rows() / 2))
+		return MatchResult(templateName, location, mmr.maxVal)
+	}
+
+	/**
+	 * Finds every occurrence of the template inside the region of the source Mat.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param templateMat Grayscale template Mat that has already been scaled for the device.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source Mat to template match. Defaults to (0, 0, 0, 0) which is equivalent to searching the full image.
+	 * @param confidence Minimum score required for each match to count.
+	 * @param maxResults Stop after this many matches have been found. Defaults to no limit.
+	 * @return List of MatchResults sorted by descending confidence.
+	 */
+	fun matchAll(
+		sourceMat: Mat, templateMat: Mat, templateName: String, region: IntArray = intArrayOf(0, 0, 0, 0), confidence: Double, maxResults: Int = Int.MAX_VALUE
+	): ArrayList<MatchResult> {
+		val results = arrayListOf<MatchResult>()
+		val rect = toRect(sourceMat, region)
+		val resultMat = correlate(sourceMat, templateMat, rect) ?: return results
+
+		while (results.size < maxResults) {
+			val mmr: Core.MinMaxLocResult = Core.minMaxLoc(resultMat)
+			if (mmr.maxVal < confidence) {
+				break
+			}
+
+			val location = Point(rect.x + mmr.maxLoc.x + (templateMat.cols() / 2), rect.y + mmr.maxLoc.y + (templateMat.rows() / 2))
+			results.add(MatchResult(templateName, location, mmr.maxVal))
+
+			// Suppress the neighbourhood of this match in the result map so that the same occurrence is not picked up again.
+			Imgproc.rectangle(
+				resultMat,
+				Point(mmr.maxLoc.x - (templateMat.cols() / 2), mmr.maxLoc.y - (templateMat.rows() / 2)),
+				Point(mmr.maxLoc.x + (templateMat.cols() / 2), mmr.maxLoc.y + (templateMat.rows() / 2)),
+				Scalar(-1.0),
+				Imgproc.FILLED
+			)
+		}
+
+		return results
+	}
+
+	/**
+	 * Finds the best match of the template by first matching downscaled copies of the source and template to find candidate positions
+	 * and then verifying only the small windows around those candidates at full resolution.
+	 *
+	 * @param sourceMat Grayscale source Mat.
+	 * @param templateMat Grayscale template Mat that has already been scaled for the device.
+	 * @param coarseSourceMat The source Mat downscaled by the pyramid factor.
+	 * @param coarseTemplateMat The template Mat downscaled by the same pyramid factor.
+	 * @param templateName File name of the template image.
+	 * @param region Specify the region consisting of (x, y, width, height) of the source Mat to template match. Defaults to (0, 0, 0, 0) which is equivalent to searching the full image.
+	 * @param confidence Minimum score required at full resolution for the match to count.
+	 * @param maxCandidates Number of coarse candidates to verify at full resolution. Defaults to 3.
+	 * @return The MatchResult or null if none of the candidates reached the confidence.
+	 */
+	fun matchCoarseToFine(
+		sourceMat: Mat, templateMat: Mat, coarseSourceMat: Mat, coarseTemplateMat: Mat, templateName: String, region: IntArray = intArrayOf(0, 0, 0, 0), confidence: Double,
+		maxCandidates: Int = 3
+	): MatchResult? {
+		// Detail is lost when downscaling so the coarse pass only needs to get close to the confidence.
+		val coarseConfidence = confidence - 0.15
+		val factor = coarseSourceMat.cols().toDouble() / sourceMat.cols()
+
+		val rect = toRect(sourceMat, region)
+		val coarseRegion = intArrayOf((rect.x * factor).toInt(), (rect.y * factor).toInt(), (rect.width * factor).toInt(), (rect.height * factor).toInt())
+		val candidates = matchAll(coarseSourceMat, coarseTemplateMat, templateName, coarseRegion, coarseConfidence, maxCandidates)
+
+		// Each candidate is only accurate to within a couple of pixels at full resolution so pad the window to verify by that much.
+		val padding = (1.0 / factor).toInt() + 2
+		var best: MatchResult? = null
+		candidates.forEach { candidate ->
+			val centerX = (candidate.location.x / factor).toInt()
+			val centerY = (candidate.location.y / factor).toInt()
+			val window = intArrayOf(
+				maxOf(rect.x, centerX - (templateMat.cols() / 2) - padding),
+				maxOf(rect.y, centerY - (templateMat.rows() / 2) - padding),
+				templateMat.cols() + (padding * 2),
+				templateMat.rows() + (padding * 2)
+			)
+			window[2] = minOf(window[2], rect.x + rect.width - window[0])
+			window[3] = minOf(window[3], rect.y + rect.height - window[1])
+
+			val result = match(sourceMat, templateMat, templateName, window, confidence)
+			if (result != null && (best == null || result.confidence > best!!.confidence)) {
+				best = result
+			}
+		}
+
+		return best
+	}
+}
@@ -0,0 +1,144 @@
+package com.steve1316.granblue_automation_android.utils
+
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import com.steve1316.granblue_automation_android.data.ConfigData
+
+/**
+ * Table of every template inside assets along with the metadata needed to search for it, built once so that lookups on the hot path are a single hash lookup.
+ *
+ * @param configData The settings that determine the tries budget of each template.
+ * @param assetManifest File names of the template images inside each folder of assets.
+ */
+class TemplateRegistry(configData: ConfigData, assetManifest: Map<String, List<String>>) {
+	private val tag: String = "${loggerTag}TemplateRegistry"
+
+	/**
+	 * Holds the metadata of a template.
+	 *
+	 * @property name Name of the template. Headers are named without the "_header" suffix.
+	 * @property folderName Name of the folder inside assets that holds the template.
+	 * @property variants File names of the templates that are all matched when searching for this one. Contains only the template itself if it has no variants.
+	 * @property tries Number of tries to search for the template with according to the adjustment settings or 0 to use the default number of tries.
+	 */
+	data class TemplateInfo(val name: String, val folderName: String, val variants: List<String>, val tries: Int)
+
+	// Buttons that look different depending on the state of the game and therefore have multiple templates.
+	private val buttonVariants: Map<String, List<String>> = mapOf(
+		"quest" to listOf("quest_blue", "quest_red"),
+		"raid" to listOf("raid_flat", "raid_bouncing"),
+		"coop_start" to listOf("coop_start_flat", "coop_start_faded"),
+		"event_special_quest" to listOf("event_special_quest_flat", "event_special_quest_bouncing"),
+		"world" to listOf("world", "world2")
+	)
+
+	private val entries: HashMap<String, TemplateInfo> = hashMapOf()
+
+	// Number of tries for each template name regardless of its folder as the adjustments apply to buttons and headers alike.
+	private val adjustments: Map<String, Int> = createAdjustments(configData)
+
+	// Names of every header without the "_header" suffix.
+	val headerNames: List<String>
+
+	init {
+		assetManifest.forEach { (folderName, fileNames) ->
+			fileNames.forEach { fileName ->
+				val name = if (folderName == "headers") fileName.substringBeforeLast(".").removeSuffix("_header") else fileName.substringBeforeLast(".")
+				entries["$folderName/$name"] = TemplateInfo(name, folderName, listOf(name), adjustments[name] ?: 0)
+			}
+		}
+
+		buttonVariants.forEach { (name, variants) ->
+			entries["buttons/$name"] = TemplateInfo(name, "buttons", variants, adjustments[name] ?: 0)
+
+			val missingVariants = variants.filter { !entries.containsKey("buttons/$it") }
+			if (missingVariants.isNotEmpty() && configData.debugMode) {
+				MessageLog.printToLog("[DEBUG] The following variants of the ${name.uppercase()} button are not inside assets: $missingVariants", tag)
+			}
+		}
+
+		headerNames = entries.values.filter { it.folderName == "headers" }.map { it.name }
+	}
+
+	/**
+	 * Create the table of tries budgets from the adjustment settings that the user enabled.
+	 *
+	 * @param configData The settings.
+	 * @return Map of the template name to its number of tries.
+	 */
+	private fun createAdjustments(configData: ConfigData): Map<String, Int> {
+		val adjustments = hashMapOf<String, Int>()
+
+		/**
+		 * Assign the number of tries to the templates if the adjustment is enabled.
+		 *
+		 * @param enabled Whether or not the user enabled the adjustment.
+		 * @param tries Number of tries set for the adjustment.
+		 * @param templateNames Names of the templates that the adjustment applies to.
+		 */
+		fun assign(enabled: Boolean, tries: Int, vararg templateNames: String) {
+			if (enabled) {
+				// The earlier adjustment takes precedence if a template belongs to more than one.
+				templateNames.forEach { adjustments.putIfAbsent(it, tries) }
+			}
+		}
+
+		assign(configData.enableCalibrationAdjustment, configData.adjustCalibration, "home")
+		assign(configData.enablePendingBattleAdjustment, configData.adjustPendingBattle, "check_your_pending_battles", "pending_battles", "quest_results_pending_battles")
+		assign(configData.enableCaptchaAdjustment, configData.adjustCaptcha, "captcha")
+		assign(
+			configData.enableSupportSummonSelectionScreenAdjustment, configData.adjustSupportSummonSelectionScreen, "select_a_summon", "coop_without_support_summon",
+			"proving_grounds_summon_selection"
+		)
+		assign(configData.enableCombatModeAdjustment, configData.adjustCombatStart, "attack")
+		assign(configData.enableCombatModeAdjustment, configData.adjustDialog, "dialog_lyria", "dialog_vyrn")
+		assign(configData.enableCombatModeAdjustment, configData.adjustSkillUsage, "use_skill", "skill_unusable")
+		assign(configData.enableCombatModeAdjustment, configData.adjustSummonUsage, "summon_details", "quick_summon1", "quick_summon2", "quick_summon_not_ready")
+		assign(configData.enableCombatModeAdjustment, configData.adjustCheckForNoLootScreen, "no_loot")
+		assign(configData.enableCombatModeAdjustment, configData.adjustCheckForBattleConcludedPopup, "battle_concluded")
+		assign(configData.enableCombatModeAdjustment, configData.adjustCheckForExpGainedPopup, "exp_gained")
+		assign(configData.enableCombatModeAdjustment, configData.adjustCheckForLootCollectionScreen, "loot_collected")
+		assign(
+			configData.enableArcarumAdjustment, configData.adjustArcarumAction, "arcarum_party_selection", "arcarum_treasure", "arcarum_node", "arcarum_mob", "arcarum_red_mob",
+			"arcarum_silver_chest", "arcarum_gold_chest", "arcarum_boss", "arcarum_boss2"
+		)
+		assign(configData.enableArcarumAdjustment, configData.adjustArcarumStageEffect, "arcarum_stage_effect_active")
+
+		return adjustments
+	}
+
+	/**
+	 * Get the metadata of the template.
+	 *
+	 * @param folderName Name of the folder inside assets that holds the template.
+	 * @param templateName Name of the template. Headers are named without the "_header" suffix.
+	 * @return The TemplateInfo or null if the template is not inside assets.
+	 */
+	fun get(folderName: String, templateName: String): TemplateInfo? {
+		return entries["$folderName/$templateName"]
+	}
+
+	/**
+	 * Get the number of tries to search for the template with according to the adjustment settings.
+	 *
+	 * @param templateName Name of the template. Headers are named without the "_header" suffix.
+	 * @return The number of tries or 0 to use the default number of tries.
+	 */
+	fun getTries(templateName: String): Int {
+		return adjustments[templateName] ?: 0
+	}
+
+	/**
+	 * Get the templates that are all matched when searching for the button.
+	 *
+	 * @param buttonName Name of the button.
+	 * @return File names of the variants of the button or only the button itself if it has no variants.
+	 */
+	fun getVariants(buttonName: String): List<String> {
+		return buttonVariants[buttonName.lowercase()] ?: listOf(buttonName)
+	}
+
+	override fun toString(): String {
+		return "${entries.size} templates, ${entries.values.count { it.tries > 0 }} with adjusted tries"
+	}
+}
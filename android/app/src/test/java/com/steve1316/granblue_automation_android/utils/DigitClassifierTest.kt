@@ -0,0 +1,99 @@
+package com.steve1316.granblue_automation_android.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class DigitClassifierTest {
+	/**
+	 * Create a glyph with the ink in the columns from the start up to but not including the end.
+	 *
+	 * @param startColumn First column with ink.
+	 * @param endColumn Column after the last column with ink.
+	 * @return The glyph in row-major order.
+	 */
+	private fun glyph(startColumn: Int, endColumn: Int): BooleanArray {
+		return BooleanArray(DigitClassifier.GLYPH_WIDTH * DigitClassifier.GLYPH_HEIGHT) { (it % DigitClassifier.GLYPH_WIDTH) in startColumn until endColumn }
+	}
+
+	/**
+	 * Flip the pixels at the indices of the glyph.
+	 *
+	 * @param glyph The glyph to copy.
+	 * @param indices Indices of the pixels to flip.
+	 * @return The copy of the glyph with the pixels flipped.
+	 */
+	private fun flip(glyph: BooleanArray, vararg indices: Int): BooleanArray {
+		return glyph.copyOf().also { copy -> indices.forEach { copy[it] = !copy[it] } }
+	}
+
+	@Test
+	fun classifyReturnsNullWithoutPrototypes() {
+		assertNull(DigitClassifier().classify(glyph(0, 4)))
+	}
+
+	@Test
+	fun classifyReturnsTheDigitOfTheNearestPrototype() {
+		val classifier = DigitClassifier()
+		classifier.learn(glyph(0, 4), 1)
+		classifier.learn(glyph(4, 8), 7)
+
+		assertEquals(1, classifier.classify(glyph(0, 4)))
+		assertEquals(7, classifier.classify(flip(glyph(4, 8), 0, 1, 2)))
+	}
+
+	@Test
+	fun classifyRejectsGlyphsFurtherThanTheMaximumDistance() {
+		val classifier = DigitClassifier(maxDistance = 2)
+		classifier.learn(glyph(0, 4), 3)
+
+		assertEquals(3, classifier.classify(flip(glyph(0, 4), 0, 1)))
+		assertNull(classifier.classify(flip(glyph(0, 4), 0, 1, 2)))
+	}
+
+	@Test
+	fun learnSkipsIdenticalPrototypes() {
+		val classifier = DigitClassifier()
+
+		assertTrue(classifier.learn(glyph(0, 4), 5))
+		assertFalse(classifier.learn(glyph(0, 4), 5))
+		assertEquals(1, classifier.size)
+	}
+
+	@Test
+	fun learnReplacesTheOldestPrototypeOnceTheDigitIsFull() {
+		val classifier = DigitClassifier(maxPrototypesPerDigit = 2, maxDistance = 0)
+		classifier.learn(glyph(0, 2), 8)
+		classifier.learn(glyph(2, 4), 8)
+		classifier.learn(glyph(4, 6), 8)
+
+		assertEquals(2, classifier.size)
+		assertNull(classifier.classify(glyph(0, 2)))
+		assertEquals(8, classifier.classify(glyph(4, 6)))
+	}
+
+	@Test
+	fun exportAndImportRoundTrip() {
+		val classifier = DigitClassifier()
+		classifier.learn(glyph(0, 4), 2)
+		classifier.learn(glyph(4, 8), 9)
+
+		val importedClassifier = DigitClassifier()
+		importedClassifier.import(classifier.export())
+
+		assertEquals(classifier.export(), importedClassifier.export())
+		assertEquals(2, importedClassifier.classify(glyph(0, 4)))
+		assertEquals(9, importedClassifier.classify(glyph(4, 8)))
+	}
+
+	@Test
+	fun importSkipsPrototypesOfTheWrongSize() {
+		val classifier = DigitClassifier()
+		classifier.import(listOf(listOf("0101"), listOf(glyph(0, 4).joinToString("") { if (it) "1" else "0" })))
+
+		assertEquals(1, classifier.size)
+		assertEquals(1, classifier.classify(glyph(0, 4)))
+	}
+}
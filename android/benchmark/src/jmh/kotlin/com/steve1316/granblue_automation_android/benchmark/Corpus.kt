@@ -0,0 +1,127 @@
+package com.steve1316.granblue_automation_android.benchmark
+
+import com.steve1316.granblue_automation_android.utils.SessionReader
+import nu.pattern.OpenCV
+import org.opencv.core.Core
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+import org.opencv.core.Rect
+import org.opencv.core.Size
+import org.opencv.imgcodecs.Imgcodecs
+import org.opencv.imgproc.Imgproc
+import java.io.File
+
+/**
+ * Loads the templates from the assets of the app and the screenshots to match them against.
+ */
+object Corpus {
+	// Width of the phones that the templates were captured on.
+	private const val baseWidth = 1080
+
+	private val assetsFolder = File(System.getProperty("benchmark.assets", "../app/src/main/assets"))
+	private val corpusFolder = File(System.getProperty("benchmark.corpus", "corpus"))
+
+	// Number of frames to take from each recorded session, spread evenly across it.
+	private val framesPerSession = System.getProperty("benchmark.sessionFrames", "20").toInt()
+
+	init {
+		OpenCV.loadLocally()
+	}
+
+	/**
+	 * Load a template as grayscale.
+	 *
+	 * @param path Path of the template inside the assets folder without the extension such as "buttons/attack".
+	 * @return The template Mat.
+	 */
+	fun loadTemplate(path: String): Mat {
+		val file = File(assetsFolder, "$path.webp")
+		val templateMat = Imgcodecs.imread(file.path, Imgcodecs.IMREAD_GRAYSCALE)
+		if (templateMat.empty()) {
+			throw Exception("Failed to load the template at ${file.absolutePath}.")
+		}
+
+		return templateMat
+	}
+
+	/**
+	 * Load every template inside a folder of the assets.
+	 *
+	 * @param folderName Name of the folder inside the assets such as "headers".
+	 * @return Map of the template names without the extension to their Mats.
+	 */
+	fun loadTemplates(folderName: String): Map<String, Mat> {
+		val files = File(assetsFolder, folderName).listFiles { file -> file.extension == "webp" } ?: throw Exception("Failed to find the ${File(assetsFolder, folderName).absolutePath} folder.")
+		return files.sortedBy { it.name }.associate { it.nameWithoutExtension to loadTemplate("$folderName/${it.nameWithoutExtension}") }
+	}
+
+	/**
+	 * Load the screenshots of the corpus as grayscale along with frames from any session recorded by SessionRecorder inside it and resize them to the width that the templates
+	 * were captured at.
+	 *
+	 * @param fallbackTemplates Templates to paste into a synthetic frame if the corpus has no screenshots.
+	 * @return List of the screenshot Mats.
+	 */
+	fun loadScreenshots(fallbackTemplates: List<Mat>): List<Mat> {
+		val files = corpusFolder.listFiles { file -> file.extension.lowercase() in listOf("png", "jpg", "jpeg", "webp") }?.sortedBy { it.name } ?: listOf()
+		val sessionFolders = corpusFolder.listFiles { file -> file.isDirectory && file.listFiles()?.any { it.extension == "gbr" } == true }?.sortedBy { it.name } ?: listOf()
+
+		val screenshotMats = files.map { file ->
+			Imgcodecs.imread(file.path, Imgcodecs.IMREAD_GRAYSCALE).also { if (it.empty()) throw Exception("Failed to load the screenshot at ${file.absolutePath}.") }
+		} + sessionFolders.flatMap { folder ->
+			val reader = SessionReader(folder)
+			val step = maxOf(1, reader.frames.size / framesPerSession)
+			(reader.frames.indices step step).take(framesPerSession).map { reader.readFrame(it) }
+		}
+
+		if (screenshotMats.isEmpty()) {
+			println("No screenshots or sessions were found in ${corpusFolder.absolutePath} so a synthetic frame will be used instead.")
+			return listOf(synthesize(fallbackTemplates))
+		}
+
+		return screenshotMats.map { screenshotMat ->
+			if (screenshotMat.cols() != baseWidth) {
+				val scale = baseWidth.toDouble() / screenshotMat.cols()
+				Imgproc.resize(screenshotMat, screenshotMat, Size(baseWidth.toDouble(), screenshotMat.rows() * scale), 0.0, 0.0, Imgproc.INTER_AREA)
+			}
+
+			screenshotMat
+		}
+	}
+
+	/**
+	 * Create a frame the size of a 1080p phone from blurred noise with each template pasted twice into it.
+	 *
+	 * @param templates Templates to paste into the frame.
+	 * @return The frame Mat.
+	 */
+	private fun synthesize(templates: List<Mat>): Mat {
+		val frameMat = Mat(2340, baseWidth, CvType.CV_8UC1)
+		Core.setRNGSeed(1316)
+		Core.randu(frameMat, 0.0, 255.0)
+		Imgproc.GaussianBlur(frameMat, frameMat, Size(9.0, 9.0), 0.0)
+
+		// Spread the copies out in rows so that they do not overlap.
+		var x = 0
+		var y = 100
+		var rowHeight = 0
+		repeat(2) {
+			templates.forEach { templateMat ->
+				if (x + templateMat.cols() > frameMat.cols()) {
+					x = 0
+					y += rowHeight + 50
+					rowHeight = 0
+				}
+
+				if (y + templateMat.rows() <= frameMat.rows()) {
+					templateMat.copyTo(frameMat.submat(Rect(x, y, templateMat.cols(), templateMat.rows())))
+				}
+
+				x += templateMat.cols() + 50
+				rowHeight = maxOf(rowHeight, templateMat.rows())
+			}
+		}
+
+		return frameMat
+	}
+}
@@ -0,0 +1,65 @@
+package com.steve1316.granblue_automation_android.benchmark
+
+import com.steve1316.granblue_automation_android.utils.ScreenClassifier
+import com.steve1316.granblue_automation_android.utils.TemplateMatcher
+import org.opencv.core.Mat
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+ * Measures matching every header against every screenshot of the corpus, which is what the bot does when it does not know which screen it is on.
+ */
+@State(Scope.Benchmark)
+open class HeaderSweepBenchmark {
+	private val confidence = 0.8
+
+	private lateinit var headerMats: Map<String, Mat>
+	private lateinit var screenshotMats: List<Mat>
+	private lateinit var headerRegions: Map<String, IntArray>
+	private lateinit var classifier: ScreenClassifier
+
+	@Setup(Level.Trial)
+	fun setup() {
+		// The headers are keyed without the "_header" suffix like ScreenClassifier expects.
+		headerMats = Corpus.loadTemplates("headers").mapKeys { it.key.removeSuffix("_header") }
+		screenshotMats = Corpus.loadScreenshots(headerMats.values.take(5))
+
+		// Remember where each header was found in the first screenshot like RoiIndex does on the device so that the prefilter of ScreenClassifier has something to check.
+		headerRegions = headerMats.mapNotNull { (name, headerMat) ->
+			TemplateMatcher.match(screenshotMats.first(), headerMat, name, confidence = confidence)?.let { result ->
+				name to intArrayOf(
+					result.location.x.toInt() - (headerMat.cols() / 2), result.location.y.toInt() - (headerMat.rows() / 2), headerMat.cols(), headerMat.rows()
+				)
+			}
+		}.toMap()
+
+		classifier = ScreenClassifier(
+			templateProvider = { headerName -> headerMats[headerName] },
+			regionProvider = { headerName -> headerRegions[headerName] },
+			matcher = { sourceMat, headerName -> TemplateMatcher.match(sourceMat, headerMats[headerName]!!, headerName, confidence = confidence) }
+		)
+	}
+
+	@TearDown(Level.Trial)
+	fun tearDown() {
+		(headerMats.values + screenshotMats).forEach { it.release() }
+	}
+
+	@Benchmark
+	fun multiTemplateSweep(blackhole: Blackhole) {
+		screenshotMats.forEach { screenshotMat ->
+			headerMats.forEach { (name, headerMat) -> blackhole.consume(TemplateMatcher.match(screenshotMat, headerMat, name, confidence = confidence)) }
+		}
+	}
+
+	@Benchmark
+	fun screenClassifier(blackhole: Blackhole) {
+		val headerNames = headerMats.keys.toList()
+		screenshotMats.forEach { blackhole.consume(classifier.classify(it, headerNames)) }
+	}
+}
@@ -0,0 +1,151 @@
+package com.steve1316.granblue_automation_android.benchmark
+
+import com.steve1316.granblue_automation_android.utils.TemplateMatcher
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+import java.io.File
+import kotlin.math.hypot
+
+// Same defaults as CustomImageUtils.
+private const val confidence = 0.8
+private const val pyramidFactor = 0.5
+private const val minCoarseTemplateSize = 12
+
+// Matches that are further apart than this many pixels count as finding something else.
+private const val maxLocationDelta = 2.0
+
+/**
+ * The outcome of matching one template against one screenshot both at full resolution and coarse-to-fine.
+ *
+ * @property screenshot Index of the screenshot inside the corpus.
+ * @property template Path of the template inside the assets folder.
+ * @property full The match at full resolution or null if it missed.
+ * @property pyramid The coarse-to-fine match or null if it missed.
+ * @property fullNanoseconds Time taken at full resolution.
+ * @property pyramidNanoseconds Time taken coarse-to-fine, including the share of downscaling the screenshot.
+ */
+private data class Comparison(
+	val screenshot: Int, val template: String, val full: TemplateMatcher.MatchResult?, val pyramid: TemplateMatcher.MatchResult?, val fullNanoseconds: Long, val pyramidNanoseconds: Long
+) {
+	val locationDelta: Double?
+		get() = if (full != null && pyramid != null) hypot(full.location.x - pyramid.location.x, full.location.y - pyramid.location.y) else null
+
+	val outcome: String
+		get() = when {
+			full == null && pyramid == null -> "both_missed"
+			full != null && pyramid == null -> "pyramid_missed"
+			full == null -> "pyramid_only"
+			locationDelta!! > maxLocationDelta -> "different_location"
+			else -> "agree"
+		}
+}
+
+/**
+ * Compare coarse-to-fine matching against matching at full resolution for every template of the asset folders on every screenshot of the corpus, the same way that
+ * CustomImageUtils does with "Enable Coarse-to-Fine Matching" on and off.
+ *
+ * Reports how often the two disagree and how long each takes on hits and misses, and writes every comparison to a CSV file for a closer look.
+ *
+ * Usage from the android folder: ./gradlew -p benchmark pyramidAccuracy
+ * The asset folders can be changed with -PaccuracyFolders=buttons,headers and the CSV is written to benchmark/build/results/pyramid_accuracy.csv.
+ */
+fun main() {
+	val folderNames = System.getProperty("benchmark.accuracyFolders", "buttons,headers").split(",").map { it.trim() }.filter { it.isNotEmpty() }
+	val templateMats = folderNames.flatMap { folderName -> Corpus.loadTemplates(folderName).map { (name, mat) -> "$folderName/$name" to mat } }.toMap()
+	val screenshotMats = Corpus.loadScreenshots(templateMats.values.toList())
+	println("Comparing ${templateMats.size} templates from ${folderNames.joinToString()} against ${screenshotMats.size} screenshots at a confidence of $confidence.")
+
+	val comparisons = mutableListOf<Comparison>()
+	var fallbacks = 0
+	screenshotMats.forEachIndexed { screenshotIndex, screenshotMat ->
+		// The bot downscales each screenshot once and shares it between every template matched against it, so its cost is spread across them here as well.
+		val downscaleStartTime = System.nanoTime()
+		val coarseScreenshotMat = downscale(screenshotMat)
+		val downscaleShare = (System.nanoTime() - downscaleStartTime) / templateMats.size
+
+		templateMats.forEach { (template, templateMat) ->
+			var startTime = System.nanoTime()
+			val full = TemplateMatcher.match(screenshotMat, templateMat, template, confidence = confidence)
+			val fullNanoseconds = System.nanoTime() - startTime
+
+			// Templates that would be too small once downscaled are matched at full resolution by the bot as well.
+			val tooSmall = templateMat.cols() * pyramidFactor < minCoarseTemplateSize || templateMat.rows() * pyramidFactor < minCoarseTemplateSize
+			startTime = System.nanoTime()
+			val pyramid = if (tooSmall) {
+				fallbacks += 1
+				TemplateMatcher.match(screenshotMat, templateMat, template, confidence = confidence)
+			} else {
+				val coarseTemplateMat = downscale(templateMat)
+				TemplateMatcher.matchCoarseToFine(screenshotMat, templateMat, coarseScreenshotMat, coarseTemplateMat, template, confidence = confidence).also { coarseTemplateMat.release() }
+			}
+			val pyramidNanoseconds = System.nanoTime() - startTime + downscaleShare
+
+			comparisons.add(Comparison(screenshotIndex, template, full, pyramid, fullNanoseconds, pyramidNanoseconds))
+		}
+
+		coarseScreenshotMat.release()
+	}
+
+	println("$fallbacks of the comparisons were of templates too small to downscale, which are matched at full resolution both ways.\n")
+
+	println("Outcome            Count")
+	comparisons.groupingBy { it.outcome }.eachCount().toSortedMap().forEach { (outcome, count) -> println(outcome.padEnd(18) + " " + count) }
+
+	val hits = comparisons.filter { it.full != null }
+	val misses = comparisons.filter { it.full == null }
+	println("\nMedian milliseconds  Full    Pyramid")
+	println("Hits (${hits.size})".padEnd(20) + " " + formatMedian(hits.map { it.fullNanoseconds }).padEnd(7) + " " + formatMedian(hits.map { it.pyramidNanoseconds }))
+	println("Misses (${misses.size})".padEnd(20) + " " + formatMedian(misses.map { it.fullNanoseconds }).padEnd(7) + " " + formatMedian(misses.map { it.pyramidNanoseconds }))
+
+	val disagreements = comparisons.filter { it.outcome == "pyramid_missed" || it.outcome == "different_location" || it.outcome == "pyramid_only" }
+	if (disagreements.isNotEmpty()) {
+		println("\nDisagreements:")
+		disagreements.forEach { comparison ->
+			println(
+				"  Screenshot ${comparison.screenshot} ${comparison.template}: ${comparison.outcome}, full ${comparison.full?.confidence?.let { "%.3f".format(it) } ?: "miss"}, " +
+					"pyramid ${comparison.pyramid?.confidence?.let { "%.3f".format(it) } ?: "miss"}"
+			)
+		}
+	}
+
+	val csvFile = File(System.getProperty("benchmark.accuracyCsv", "pyramid_accuracy.csv"))
+	csvFile.parentFile?.mkdirs()
+	csvFile.writeText(
+		(listOf("screenshot,template,outcome,full_confidence,pyramid_confidence,location_delta,full_ms,pyramid_ms") + comparisons.map { comparison ->
+			listOf(
+				comparison.screenshot, comparison.template, comparison.outcome, comparison.full?.confidence ?: "", comparison.pyramid?.confidence ?: "", comparison.locationDelta ?: "",
+				comparison.fullNanoseconds / 1_000_000.0, comparison.pyramidNanoseconds / 1_000_000.0
+			).joinToString(",")
+		}).joinToString("\n") + "\n"
+	)
+	println("\nWrote every comparison to ${csvFile.absolutePath}")
+
+	(templateMats.values + screenshotMats).forEach { it.release() }
+}
+
+/**
+ * Downscale the Mat by the pyramid factor the same way that CustomImageUtils does.
+ *
+ * @param mat The Mat to downscale.
+ * @return The downscaled Mat.
+ */
+private fun downscale(mat: Mat): Mat {
+	val coarseMat = Mat()
+	Imgproc.resize(mat, coarseMat, Size(mat.cols() * pyramidFactor, mat.rows() * pyramidFactor), 0.0, 0.0, Imgproc.INTER_AREA)
+	return coarseMat
+}
+
+/**
+ * Format the median of the durations in milliseconds.
+ *
+ * @param nanoseconds The durations.
+ * @return The median or "-" if there are none.
+ */
+private fun formatMedian(nanoseconds: List<Long>): String {
+	if (nanoseconds.isEmpty()) {
+		return "-"
+	}
+
+	return "%.2f".format(nanoseconds.sorted()[nanoseconds.size / 2] / 1_000_000.0)
+}
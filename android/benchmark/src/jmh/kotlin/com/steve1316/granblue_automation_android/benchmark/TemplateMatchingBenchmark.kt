@@ -0,0 +1,108 @@
+package com.steve1316.granblue_automation_android.benchmark
+
+import com.steve1316.granblue_automation_android.utils.TemplateMatcher
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.infra.Blackhole
+
+/**
+ * Measures each way that the bot matches a template against every screenshot of the corpus.
+ *
+ * Every benchmark matches the template against all of the screenshots so that the score is the time for one pass over the corpus.
+ */
+@State(Scope.Benchmark)
+open class TemplateMatchingBenchmark {
+	// Same defaults as CustomImageUtils.
+	private val confidence = 0.8
+	private val pyramidFactor = 0.5
+
+	// Margin around the last known location that the region of interest covers, similar to what RoiIndex learns.
+	private val roiPadding = 50
+
+	@Param("buttons/attack", "buttons/ok", "buttons/close", "headers/home_header", "summons/bahamut")
+	lateinit var template: String
+
+	private lateinit var templateMat: Mat
+	private lateinit var coarseTemplateMat: Mat
+	private lateinit var screenshotMats: List<Mat>
+	private lateinit var coarseScreenshotMats: List<Mat>
+	private lateinit var roiRegions: List<IntArray>
+
+	@Setup(Level.Trial)
+	fun setup() {
+		templateMat = Corpus.loadTemplate(template)
+		coarseTemplateMat = downscale(templateMat)
+		screenshotMats = Corpus.loadScreenshots(listOf(templateMat))
+		coarseScreenshotMats = screenshotMats.map { downscale(it) }
+
+		// Center the region of interest on the best match of each screenshot whether or not it reaches the confidence.
+		roiRegions = screenshotMats.map { screenshotMat ->
+			val best = TemplateMatcher.match(screenshotMat, templateMat, template, confidence = -1.0)!!
+			intArrayOf(
+				best.location.x.toInt() - (templateMat.cols() / 2) - roiPadding,
+				best.location.y.toInt() - (templateMat.rows() / 2) - roiPadding,
+				templateMat.cols() + (roiPadding * 2),
+				templateMat.rows() + (roiPadding * 2)
+			)
+		}
+	}
+
+	@TearDown(Level.Trial)
+	fun tearDown() {
+		(listOf(templateMat, coarseTemplateMat) + screenshotMats + coarseScreenshotMats).forEach { it.release() }
+	}
+
+	/**
+	 * Downscale the Mat by the pyramid factor the same way that CustomImageUtils does.
+	 *
+	 * @param mat The Mat to downscale.
+	 * @return The downscaled Mat.
+	 */
+	private fun downscale(mat: Mat): Mat {
+		val coarseMat = Mat()
+		Imgproc.resize(mat, coarseMat, Size(mat.cols() * pyramidFactor, mat.rows() * pyramidFactor), 0.0, 0.0, Imgproc.INTER_AREA)
+		return coarseMat
+	}
+
+	@Benchmark
+	fun fullFrameMatch(blackhole: Blackhole) {
+		screenshotMats.forEach { blackhole.consume(TemplateMatcher.match(it, templateMat, template, confidence = confidence)) }
+	}
+
+	@Benchmark
+	fun roiMatch(blackhole: Blackhole) {
+		screenshotMats.forEachIndexed { index, screenshotMat ->
+			blackhole.consume(TemplateMatcher.match(screenshotMat, templateMat, template, roiRegions[index], confidence))
+		}
+	}
+
+	@Benchmark
+	fun pyramidMatch(blackhole: Blackhole) {
+		screenshotMats.forEachIndexed { index, screenshotMat ->
+			blackhole.consume(TemplateMatcher.matchCoarseToFine(screenshotMat, templateMat, coarseScreenshotMats[index], coarseTemplateMat, template, confidence = confidence))
+		}
+	}
+
+	@Benchmark
+	fun pyramidMatchWithDownscale(blackhole: Blackhole) {
+		// Includes the cost of downscaling the screenshot which the bot pays once per frame.
+		screenshotMats.forEach { screenshotMat ->
+			val coarseScreenshotMat = downscale(screenshotMat)
+			blackhole.consume(TemplateMatcher.matchCoarseToFine(screenshotMat, templateMat, coarseScreenshotMat, coarseTemplateMat, template, confidence = confidence))
+			coarseScreenshotMat.release()
+		}
+	}
+
+	@Benchmark
+	fun matchAll(blackhole: Blackhole) {
+		screenshotMats.forEach { blackhole.consume(TemplateMatcher.matchAll(it, templateMat, template, confidence = confidence)) }
+	}
+}
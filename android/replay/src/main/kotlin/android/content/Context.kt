@@ -0,0 +1,42 @@
+package android.content
+
+import android.content.res.AssetManager
+import java.io.File
+
+/**
+ * JVM version of the Android Context that keeps the assets, files and preferences of the app inside folders on disk for the replays.
+ *
+ * @property assets The assets of the app.
+ * @property filesDir Internal storage of the app.
+ * @param externalFilesDir External storage of the app that settings.json is read from and the match metrics, device profile and sessions are written to.
+ */
+open class Context(val assets: AssetManager, val filesDir: File, private val externalFilesDir: File) {
+	private val sharedPreferences = mutableMapOf<String, SharedPreferences>()
+
+	/**
+	 * Get the folder of the app inside external storage.
+	 *
+	 * @param type Name of the subfolder or null for the folder itself.
+	 * @return The folder.
+	 */
+	fun getExternalFilesDir(type: String?): File? {
+		return if (type == null) externalFilesDir else File(externalFilesDir, type)
+	}
+
+	/**
+	 * Get the preferences with the specified name. They only live in memory for as long as the replay runs.
+	 *
+	 * @param name Name of the preferences.
+	 * @param mode Ignored as there is only ever the one app.
+	 * @return The preferences.
+	 */
+	fun getSharedPreferences(name: String, mode: Int): SharedPreferences {
+		synchronized(sharedPreferences) {
+			return sharedPreferences.getOrPut(name) { SharedPreferences() }
+		}
+	}
+
+	companion object {
+		const val MODE_PRIVATE = 0
+	}
+}
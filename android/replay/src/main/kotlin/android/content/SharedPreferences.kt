@@ -0,0 +1,71 @@
+package android.content
+
+/**
+ * JVM version of the Android SharedPreferences that keeps every value in memory.
+ */
+class SharedPreferences {
+	private val values = mutableMapOf<String, Any?>()
+
+	fun getString(key: String, defValue: String?): String? = synchronized(values) { if (key in values) values[key] as String? else defValue }
+
+	fun getInt(key: String, defValue: Int): Int = synchronized(values) { values[key] as Int? ?: defValue }
+
+	fun getFloat(key: String, defValue: Float): Float = synchronized(values) { values[key] as Float? ?: defValue }
+
+	fun getBoolean(key: String, defValue: Boolean): Boolean = synchronized(values) { values[key] as Boolean? ?: defValue }
+
+	fun getLong(key: String, defValue: Long): Long = synchronized(values) { values[key] as Long? ?: defValue }
+
+	fun edit(): Editor = Editor()
+
+	/**
+	 * Collects the changes and applies them all at once when they are committed.
+	 */
+	inner class Editor {
+		private val changes = mutableMapOf<String, Any?>()
+		private val removals = mutableSetOf<String>()
+
+		fun putString(key: String, value: String?): Editor {
+			changes[key] = value
+			return this
+		}
+
+		fun putInt(key: String, value: Int): Editor {
+			changes[key] = value
+			return this
+		}
+
+		fun putFloat(key: String, value: Float): Editor {
+			changes[key] = value
+			return this
+		}
+
+		fun putBoolean(key: String, value: Boolean): Editor {
+			changes[key] = value
+			return this
+		}
+
+		fun putLong(key: String, value: Long): Editor {
+			changes[key] = value
+			return this
+		}
+
+		fun remove(key: String): Editor {
+			removals.add(key)
+			return this
+		}
+
+		fun commit(): Boolean {
+			synchronized(values) {
+				removals.forEach { values.remove(it) }
+				values.putAll(changes)
+			}
+
+			return true
+		}
+
+		fun apply() {
+			commit()
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package android.content.res
+
+import java.io.Closeable
+import java.io.File
+import java.io.FileInputStream
+
+/**
+ * JVM version of the Android AssetFileDescriptor for an asset that is a file of its own.
+ *
+ * @param file The asset.
+ */
+class AssetFileDescriptor(private val file: File) : Closeable {
+	val startOffset: Long = 0L
+
+	val length: Long = file.length()
+
+	fun createInputStream(): FileInputStream = FileInputStream(file)
+
+	override fun close() {}
+}
@@ -0,0 +1,47 @@
+package android.content.res
+
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileNotFoundException
+import java.io.InputStream
+
+/**
+ * JVM version of the Android AssetManager that reads the assets straight from the assets folder of the app.
+ *
+ * @param folder The assets folder.
+ */
+class AssetManager(private val folder: File) {
+	/**
+	 * Open the asset for reading.
+	 *
+	 * @param fileName Path of the asset relative to the assets folder.
+	 * @return The stream of the asset.
+	 */
+	fun open(fileName: String): InputStream {
+		return FileInputStream(find(fileName))
+	}
+
+	/**
+	 * Open the uncompressed asset so that it can be memory mapped.
+	 *
+	 * @param fileName Path of the asset relative to the assets folder.
+	 * @return The descriptor of the asset, which covers the whole file as assets are not packed together on the JVM.
+	 */
+	fun openFd(fileName: String): AssetFileDescriptor {
+		return AssetFileDescriptor(find(fileName))
+	}
+
+	/**
+	 * List the assets inside the folder.
+	 *
+	 * @param path Path of the folder relative to the assets folder.
+	 * @return The file names inside the folder or an empty array if there is no such folder.
+	 */
+	fun list(path: String): Array<String>? {
+		return File(folder, path).list()?.sortedArray() ?: arrayOf()
+	}
+
+	private fun find(fileName: String): File {
+		return File(folder, fileName).takeIf { it.isFile } ?: throw FileNotFoundException(fileName)
+	}
+}
@@ -0,0 +1,8 @@
+package android.content.res
+
+/**
+ * JVM version of the Android Resources for the exception that the bot throws when it cannot find something on the screen.
+ */
+class Resources {
+	class NotFoundException(message: String) : RuntimeException(message)
+}
@@ -0,0 +1,74 @@
+package android.graphics
+
+/**
+ * JVM version of the Android Bitmap that holds its pixels as premultiplied ARGB colors like Android does.
+ *
+ * @property width Width of the Bitmap in pixels.
+ * @property height Height of the Bitmap in pixels.
+ */
+class Bitmap private constructor(val width: Int, val height: Int, private var pixels: IntArray?) {
+	val config: Config = Config.ARGB_8888
+
+	val isRecycled: Boolean
+		get() = pixels == null
+
+	fun recycle() {
+		pixels = null
+	}
+
+	/**
+	 * Copy the colors of the region into the array.
+	 *
+	 * @param pixels The array to copy the colors into.
+	 * @param offset Index of the first color inside the array.
+	 * @param stride Number of colors between the rows inside the array.
+	 * @param x Left of the region.
+	 * @param y Top of the region.
+	 * @param width Width of the region.
+	 * @param height Height of the region.
+	 */
+	fun getPixels(pixels: IntArray, offset: Int, stride: Int, x: Int, y: Int, width: Int, height: Int) {
+		val source = checkNotNull(this.pixels) { "Can't call getPixels() on a recycled bitmap" }
+		require(x >= 0 && y >= 0 && x + width <= this.width && y + height <= this.height) { "The region must be inside the bitmap" }
+		for (row in 0 until height) {
+			System.arraycopy(source, (y + row) * this.width + x, pixels, offset + row * stride, width)
+		}
+	}
+
+	/**
+	 * Copy the colors from the array into the region.
+	 *
+	 * @param pixels The array to copy the colors from.
+	 * @param offset Index of the first color inside the array.
+	 * @param stride Number of colors between the rows inside the array.
+	 * @param x Left of the region.
+	 * @param y Top of the region.
+	 * @param width Width of the region.
+	 * @param height Height of the region.
+	 */
+	fun setPixels(pixels: IntArray, offset: Int, stride: Int, x: Int, y: Int, width: Int, height: Int) {
+		val destination = checkNotNull(this.pixels) { "Can't call setPixels() on a recycled bitmap" }
+		require(x >= 0 && y >= 0 && x + width <= this.width && y + height <= this.height) { "The region must be inside the bitmap" }
+		for (row in 0 until height) {
+			System.arraycopy(pixels, offset + row * stride, destination, (y + row) * this.width + x, width)
+		}
+	}
+
+	enum class Config {
+		ARGB_8888
+	}
+
+	companion object {
+		/**
+		 * Create a new transparent Bitmap.
+		 *
+		 * @param width Width of the Bitmap in pixels.
+		 * @param height Height of the Bitmap in pixels.
+		 * @param config Only ARGB_8888 is supported.
+		 * @return The Bitmap.
+		 */
+		fun createBitmap(width: Int, height: Int, config: Config): Bitmap {
+			return Bitmap(width, height, IntArray(width * height))
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package android.graphics
+
+import org.opencv.core.Mat
+import org.opencv.core.MatOfByte
+import org.opencv.imgcodecs.Imgcodecs
+import org.opencv.imgproc.Imgproc
+import java.io.File
+import java.io.InputStream
+
+/**
+ * JVM version of the Android BitmapFactory that decodes the images through OpenCV.
+ */
+object BitmapFactory {
+	/**
+	 * Decode the image inside the stream.
+	 *
+	 * @param inputStream Stream of a PNG, JPEG or WEBP image.
+	 * @return The Bitmap or null if the image could not be decoded.
+	 */
+	fun decodeStream(inputStream: InputStream?): Bitmap? {
+		val bytes = inputStream?.readBytes() ?: return null
+		val encoded = MatOfByte(*bytes)
+		val decoded = Imgcodecs.imdecode(encoded, Imgcodecs.IMREAD_UNCHANGED)
+		encoded.release()
+		try {
+			return if (decoded.empty()) null else fromMat(decoded)
+		} finally {
+			decoded.release()
+		}
+	}
+
+	/**
+	 * Decode the image file.
+	 *
+	 * @param pathName Path of a PNG, JPEG or WEBP image.
+	 * @return The Bitmap or null if the image could not be decoded.
+	 */
+	fun decodeFile(pathName: String): Bitmap? {
+		val file = File(pathName)
+		return if (file.isFile) file.inputStream().use { decodeStream(it) } else null
+	}
+
+	/**
+	 * Convert the decoded image to a Bitmap with premultiplied colors like Android does when decoding.
+	 *
+	 * @param decoded Grayscale, BGR or BGRA image from OpenCV.
+	 * @return The Bitmap.
+	 */
+	private fun fromMat(decoded: Mat): Bitmap {
+		val bgra = Mat()
+		when (decoded.channels()) {
+			1 -> Imgproc.cvtColor(decoded, bgra, Imgproc.COLOR_GRAY2BGRA)
+			3 -> Imgproc.cvtColor(decoded, bgra, Imgproc.COLOR_BGR2BGRA)
+			else -> decoded.copyTo(bgra)
+		}
+
+		val width = bgra.cols()
+		val height = bgra.rows()
+		val bytes = ByteArray(width * height * 4)
+		bgra.get(0, 0, bytes)
+		bgra.release()
+
+		val pixels = IntArray(width * height) { index ->
+			val alpha = bytes[index * 4 + 3].toInt() and 0xFF
+			val red = (bytes[index * 4 + 2].toInt() and 0xFF) * alpha / 255
+			val green = (bytes[index * 4 + 1].toInt() and 0xFF) * alpha / 255
+			val blue = (bytes[index * 4].toInt() and 0xFF) * alpha / 255
+			(alpha shl 24) or (red shl 16) or (green shl 8) or blue
+		}
+
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888).apply { setPixels(pixels, 0, width, 0, 0, width, height) }
+	}
+}
@@ -0,0 +1,20 @@
+package android.util
+
+/**
+ * JVM version of the Android Log that prints to the console.
+ */
+object Log {
+	fun d(tag: String, message: String): Int = print("D", tag, message)
+
+	fun i(tag: String, message: String): Int = print("I", tag, message)
+
+	fun w(tag: String, message: String): Int = print("W", tag, message)
+
+	fun e(tag: String, message: String): Int = print("E", tag, message)
+
+	private fun print(priority: String, tag: String, message: String): Int {
+		val line = "$priority/$tag: $message"
+		println(line)
+		return line.length
+	}
+}
@@ -0,0 +1,19 @@
+package androidx.core.content
+
+import android.content.SharedPreferences
+
+/**
+ * JVM version of the AndroidX extension for editing the preferences inside a block.
+ *
+ * @param commit Whether to commit the changes right away or to apply them. Both are the same on the JVM.
+ * @param action The changes to make.
+ */
+inline fun SharedPreferences.edit(commit: Boolean = false, action: SharedPreferences.Editor.() -> Unit) {
+	val editor = edit()
+	action(editor)
+	if (commit) {
+		editor.commit()
+	} else {
+		editor.apply()
+	}
+}
@@ -0,0 +1,19 @@
+package androidx.preference
+
+import android.content.Context
+import android.content.SharedPreferences
+
+/**
+ * JVM version of the AndroidX PreferenceManager.
+ */
+object PreferenceManager {
+	/**
+	 * Get the default preferences of the app, which is where the settings of the user are kept.
+	 *
+	 * @param context The context of the app.
+	 * @return The default preferences.
+	 */
+	fun getDefaultSharedPreferences(context: Context): SharedPreferences {
+		return context.getSharedPreferences("default", Context.MODE_PRIVATE)
+	}
+}
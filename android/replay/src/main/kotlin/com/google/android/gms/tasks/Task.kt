@@ -0,0 +1,24 @@
+package com.google.android.gms.tasks
+
+/**
+ * JVM version of the Google Play Services Task for work that has already finished by the time that it is handed out.
+ *
+ * @param value The result of the work if it succeeded.
+ * @property exception Why the work failed or null if it succeeded.
+ */
+class Task<T>(private val value: T?, val exception: Exception? = null) {
+	val isComplete: Boolean = true
+
+	val isSuccessful: Boolean
+		get() = exception == null
+
+	val result: T
+		get() {
+			if (exception != null) {
+				throw RuntimeException(exception)
+			}
+
+			@Suppress("UNCHECKED_CAST")
+			return value as T
+		}
+}
@@ -0,0 +1,33 @@
+package com.google.android.gms.tasks
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * JVM version of the Google Play Services helpers for waiting on Tasks.
+ */
+object Tasks {
+	/**
+	 * Combine the Tasks into one that finishes once all of them have.
+	 *
+	 * @param tasks The Tasks to wait for.
+	 * @return The Task with every Task as its result.
+	 */
+	fun whenAllComplete(tasks: Collection<Task<*>>): Task<List<Task<*>>> {
+		return Task(tasks.toList())
+	}
+
+	/**
+	 * Wait for the Task to finish, which is right away as every Task is handed out finished.
+	 *
+	 * @param task The Task to wait for.
+	 * @param timeout Ignored as there is nothing to wait for.
+	 * @param unit Ignored as there is nothing to wait for.
+	 * @return The result of the Task.
+	 * @throws ExecutionException If the Task failed.
+	 */
+	fun <T> await(task: Task<T>, timeout: Long, unit: TimeUnit): T {
+		task.exception?.let { throw ExecutionException(it) }
+		return task.result
+	}
+}
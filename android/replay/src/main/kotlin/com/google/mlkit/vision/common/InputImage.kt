@@ -0,0 +1,15 @@
+package com.google.mlkit.vision.common
+
+import android.graphics.Bitmap
+
+/**
+ * JVM version of the ML Kit image that text is recognized in.
+ *
+ * @property bitmap The image.
+ * @property rotationDegrees How far the image is rotated.
+ */
+class InputImage private constructor(val bitmap: Bitmap, val rotationDegrees: Int) {
+	companion object {
+		fun fromBitmap(bitmap: Bitmap, rotationDegrees: Int): InputImage = InputImage(bitmap, rotationDegrees)
+	}
+}
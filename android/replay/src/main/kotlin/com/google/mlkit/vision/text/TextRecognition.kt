@@ -0,0 +1,35 @@
+package com.google.mlkit.vision.text
+
+import com.google.android.gms.tasks.Task
+import com.google.mlkit.vision.common.InputImage
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions
+
+/**
+ * Text that was recognized in an image.
+ *
+ * @property textBlocks Every block of text.
+ */
+class Text(val textBlocks: List<TextBlock>) {
+	val text: String
+		get() = textBlocks.joinToString("\n") { it.text }
+
+	class TextBlock(val text: String)
+}
+
+/**
+ * Recognizes text in images.
+ */
+interface TextRecognizer {
+	fun process(image: InputImage): Task<Text>
+}
+
+/**
+ * JVM version of ML Kit's text recognition. Google's ML OCR only runs on Android so no text is ever recognized during replays and every item amount comes back as 1.
+ */
+object TextRecognition {
+	fun getClient(options: TextRecognizerOptions): TextRecognizer {
+		return object : TextRecognizer {
+			override fun process(image: InputImage): Task<Text> = Task(Text(listOf()))
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.google.mlkit.vision.text.latin
+
+/**
+ * JVM version of the options for recognizing Latin text.
+ */
+class TextRecognizerOptions private constructor() {
+	companion object {
+		val DEFAULT_OPTIONS = TextRecognizerOptions()
+	}
+}
@@ -0,0 +1,13 @@
+package com.steve1316.automation_library.data
+
+/**
+ * JVM version of the automation library's data shared between the bot and the library. The replay sets the display from its recorded frames.
+ */
+class SharedData {
+	companion object {
+		var loggerTag: String = ""
+		var displayWidth: Int = 0
+		var displayHeight: Int = 0
+		var displayDPI: Int = 0
+	}
+}
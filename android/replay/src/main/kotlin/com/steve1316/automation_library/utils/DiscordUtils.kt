@@ -0,0 +1,12 @@
+package com.steve1316.automation_library.utils
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * JVM version of the automation library's Discord notifications. Replays never connect to Discord so the messages just stay in the queue.
+ */
+class DiscordUtils {
+	companion object {
+		val queue: ConcurrentLinkedQueue<String> = ConcurrentLinkedQueue()
+	}
+}
@@ -0,0 +1,145 @@
+package com.steve1316.automation_library.utils
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import androidx.preference.PreferenceManager
+import com.steve1316.automation_library.data.SharedData
+import com.steve1316.granblue_automation_android.replay.ReplayDevice
+import com.steve1316.granblue_automation_android.utils.TemplateMatcher
+import org.opencv.android.Utils
+import org.opencv.core.Mat
+import org.opencv.core.Size
+import org.opencv.imgproc.Imgproc
+import java.io.IOException
+import java.text.DecimalFormat
+
+/**
+ * JVM version of the parts of the automation library's image utilities that the bot builds on, with the screenshots taken from the device of the running replay.
+ *
+ * @param context The context of the app.
+ */
+open class ImageUtils(private val context: Context) {
+	private val tag: String = "${SharedData.loggerTag}ImageUtils"
+
+	private val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context)
+
+	var confidence: Double = sharedPreferences.getFloat("confidence", 80f).toDouble() / 100.0
+	var confidenceAll: Double = sharedPreferences.getFloat("confidenceAll", 80f).toDouble() / 100.0
+	var customScale: Double = sharedPreferences.getFloat("customScale", 1.0f).toDouble()
+	protected val debugMode: Boolean = sharedPreferences.getBoolean("debugMode", false)
+	protected val decimalFormat = DecimalFormat("#.###")
+
+	// The same device checks as the library, worked out from the size of the recorded frames.
+	val isTablet: Boolean = (SharedData.displayWidth == 1600 && SharedData.displayHeight == 2560) || (SharedData.displayWidth == 2560 && SharedData.displayHeight == 1600)
+	val is720p: Boolean = SharedData.displayWidth == 720
+	val isTabletLandscape: Boolean = SharedData.displayWidth == 2560 && SharedData.displayHeight == 1600
+
+	private var templateSubfolderPath: String = ""
+
+	/**
+	 * Set the folder inside assets that waitVanish() looks for its templates in.
+	 *
+	 * @param path Path of the folder with a trailing slash.
+	 */
+	fun setTemplateSubfolderPath(path: String) {
+		templateSubfolderPath = path
+	}
+
+	/**
+	 * Change the swipe that the library performs to get a new screenshot. Replays always have their next frame ready so it is ignored.
+	 */
+	fun adjustTriggerNewImageSwipeBehavior(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long = 0L) {}
+
+	/**
+	 * Get the current frame of the running replay.
+	 *
+	 * @return The frame.
+	 */
+	fun getSourceScreenshot(): Bitmap {
+		return checkNotNull(ReplayDevice.current) { "No replay is running." }.captureScreenshot()
+	}
+
+	/**
+	 * Wait for the template to vanish from the screen by checking once a second.
+	 *
+	 * @param templateName File name of the template inside the template subfolder.
+	 * @param timeout Number of seconds to wait for.
+	 * @param region The (x, y, width, height) region to look in or all zeroes for the whole screen.
+	 * @param suppressError Whether to leave out the warning if the template did not vanish.
+	 * @return True if the template vanished in time.
+	 */
+	fun waitVanish(templateName: String, timeout: Int = 5, region: IntArray = intArrayOf(0, 0, 0, 0), suppressError: Boolean = false): Boolean {
+		MessageLog.printToLog("[INFO] Now waiting for ${templateName.uppercase()} to vanish from the current screen...", tag)
+
+		val templateMat = loadTemplate(templateName) ?: return false
+		try {
+			repeat(timeout) { attempt ->
+				if (!isOnScreen(templateMat, templateName, region)) {
+					MessageLog.printToLog("[SUCCESS] ${templateName.uppercase()} has vanished from the screen.", tag)
+					return true
+				}
+
+				if (attempt < timeout - 1) {
+					Thread.sleep(1000L)
+				}
+			}
+		} finally {
+			templateMat.release()
+		}
+
+		if (!suppressError) {
+			MessageLog.printToLog("[WARNING] ${templateName.uppercase()} did not vanish from the screen.", tag, isWarning = true)
+		}
+
+		return false
+	}
+
+	/**
+	 * Load the template as grayscale at the custom scale.
+	 *
+	 * @param templateName File name of the template inside the template subfolder.
+	 * @return The template or null if it could not be loaded.
+	 */
+	private fun loadTemplate(templateName: String): Mat? {
+		val templateBitmap = try {
+			context.assets.open("$templateSubfolderPath$templateName.webp").use { BitmapFactory.decodeStream(it) }
+		} catch (e: IOException) {
+			null
+		}
+
+		if (templateBitmap == null) {
+			MessageLog.printToLog("[ERROR] Failed to load the ${templateName.uppercase()} template from $templateSubfolderPath.", tag, isError = true)
+			return null
+		}
+
+		val templateMat = Mat()
+		Utils.bitmapToMat(templateBitmap, templateMat)
+		templateBitmap.recycle()
+		Imgproc.cvtColor(templateMat, templateMat, Imgproc.COLOR_RGBA2GRAY)
+		if (customScale != 1.0) {
+			Imgproc.resize(templateMat, templateMat, Size(templateMat.cols() * customScale, templateMat.rows() * customScale), 0.0, 0.0, Imgproc.INTER_AREA)
+		}
+
+		return templateMat
+	}
+
+	/**
+	 * Check if the template is on the current frame.
+	 *
+	 * @param templateMat Grayscale template.
+	 * @param templateName Name of the template.
+	 * @param region The (x, y, width, height) region to look in or all zeroes for the whole screen.
+	 * @return True if the template was found.
+	 */
+	private fun isOnScreen(templateMat: Mat, templateName: String, region: IntArray): Boolean {
+		val sourceMat = Mat()
+		try {
+			Utils.bitmapToMat(getSourceScreenshot(), sourceMat)
+			Imgproc.cvtColor(sourceMat, sourceMat, Imgproc.COLOR_RGBA2GRAY)
+			return TemplateMatcher.match(sourceMat, templateMat, templateName, region, confidence) != null
+		} finally {
+			sourceMat.release()
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.steve1316.automation_library.utils
+
+import android.content.Context
+import org.json.JSONArray
+
+/**
+ * JVM version of the automation library's base for loading settings.json into the preferences of the app.
+ */
+abstract class JSONParser {
+	/**
+	 * Load the settings from settings.json into the preferences of the app.
+	 *
+	 * @param myContext The context of the app.
+	 */
+	abstract fun initializeSettings(myContext: Context)
+
+	/**
+	 * Convert the JSONArray to a list of strings.
+	 *
+	 * @param jsonArray The JSONArray to convert.
+	 * @return The list of strings.
+	 */
+	fun toStringArrayList(jsonArray: JSONArray): ArrayList<String> {
+		return ArrayList((0 until jsonArray.length()).map { jsonArray.getString(it) })
+	}
+
+	/**
+	 * Convert the JSONArray to a list of integers.
+	 *
+	 * @param jsonArray The JSONArray to convert.
+	 * @return The list of integers.
+	 */
+	fun toIntArrayList(jsonArray: JSONArray): ArrayList<Int> {
+		return ArrayList((0 until jsonArray.length()).map { jsonArray.getInt(it) })
+	}
+}
@@ -0,0 +1,30 @@
+package com.steve1316.automation_library.utils
+
+/**
+ * JVM version of the automation library's message log that prints every message to the console instead of the log inside the app.
+ */
+class MessageLog {
+	companion object {
+		private val startTime = System.currentTimeMillis()
+
+		/**
+		 * Print the message to the console along with the time since the replay started.
+		 *
+		 * @param message The message to print.
+		 * @param tag Tag of the class that printed the message. It is left out like inside the app.
+		 * @param isWarning Whether the message is a warning.
+		 * @param isError Whether the message is an error. Errors are printed to the error stream.
+		 * @param skipPrintTime Whether to leave out the time.
+		 */
+		fun printToLog(message: String, tag: String, isWarning: Boolean = false, isError: Boolean = false, skipPrintTime: Boolean = false) {
+			val elapsedMilliseconds = System.currentTimeMillis() - startTime
+			val time = String.format("%02d:%02d:%02d", elapsedMilliseconds / 3_600_000L, (elapsedMilliseconds / 60_000L) % 60L, (elapsedMilliseconds / 1_000L) % 60L)
+			val line = if (skipPrintTime || message.startsWith("\n")) message else "$time $message"
+			if (isError) {
+				System.err.println(line)
+			} else {
+				println(line)
+			}
+		}
+	}
+}
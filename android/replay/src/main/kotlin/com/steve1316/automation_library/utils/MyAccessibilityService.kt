@@ -0,0 +1,48 @@
+package com.steve1316.automation_library.utils
+
+import android.content.Context
+import com.steve1316.granblue_automation_android.replay.ReplayDevice
+
+/**
+ * JVM version of the automation library's Accessibility Service that performs every gesture on the device of the running replay.
+ *
+ * @param device The device of the running replay.
+ */
+class MyAccessibilityService private constructor(private val device: ReplayDevice) {
+	fun tap(x: Double, y: Double, imageName: String, longPress: Boolean = false, taps: Int = 1): Boolean {
+		return device.tap(x, y, imageName, longPress = longPress, taps = taps)
+	}
+
+	fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long = 500L): Boolean {
+		return device.swipe(oldX, oldY, newX, newY, duration = duration)
+	}
+
+	fun scroll(scrollDown: Boolean = true, duration: Long = 500L): Boolean {
+		return device.scroll(scrollDown = scrollDown, duration = duration)
+	}
+
+	companion object {
+		var imageSubFolder: String = ""
+		var textToPaste: String = ""
+		var enableTextToPaste: Boolean = false
+
+		/**
+		 * Check if the service is running, which it is for as long as a replay is.
+		 *
+		 * @param context The context of the app.
+		 * @return True if a replay is running.
+		 */
+		fun checkStatus(context: Context): Boolean {
+			return ReplayDevice.current != null
+		}
+
+		/**
+		 * Get the running service.
+		 *
+		 * @return The service for the device of the running replay.
+		 */
+		fun getInstance(): MyAccessibilityService {
+			return MyAccessibilityService(checkNotNull(ReplayDevice.current) { "No replay is running." })
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package com.steve1316.granblue_automation_android
+
+/**
+ * Replay version of the MainActivity for the tag that every log message of the bot starts with.
+ */
+object MainActivity {
+	const val loggerTag: String = "[GAA]"
+}
@@ -0,0 +1,233 @@
+package com.steve1316.granblue_automation_android.replay
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import com.steve1316.granblue_automation_android.utils.GestureDriver
+import org.json.JSONObject
+import java.io.File
+
+/**
+ * Simulated device that serves recorded frames according to a scripted screen graph instead of the real screen and records the gestures instead of performing them.
+ *
+ * The screen graph is read from "screen_graph.json" inside the folder and looks like this:
+ * ```
+ * {
+ *   "start": "home",
+ *   "end": "home",
+ *   "dpi": 420,
+ *   "screens": {
+ *     "home": { "frame": "home.png", "taps": [{ "region": [x, y, width, height], "next": "quest" }] },
+ *     "quest": { "frame": "quest.png", "swipe": "quest_scrolled", "after": { "milliseconds": 3000, "next": "home" } }
+ *   }
+ * }
+ * ```
+ * A tap inside one of the regions of the current screen moves to its next screen. Any swipe or scroll moves to the "swipe" screen if there is one.
+ * The "after" transition moves on by itself once the screen has been shown for that long, such as for animations.
+ * Gestures that do not lead anywhere leave the current screen as is but are still recorded.
+ * The optional "end" is the screen that the bot is expected to finish on and "dpi" is the DPI of the device that the frames were recorded on, which defaults to 420.
+ *
+ * @param folder The folder that holds the screen graph and the recorded frames.
+ */
+class ReplayDevice(private val folder: File) : GestureDriver {
+	/**
+	 * A tap that moves to another screen.
+	 *
+	 * @property region The (x, y, width, height) bounding box that the tap needs to land in.
+	 * @property next Name of the screen to move to.
+	 */
+	private data class TapTransition(val region: IntArray, val next: String)
+
+	/**
+	 * A recorded frame and where the gestures on it lead.
+	 *
+	 * @property frameFileName File name of the recorded frame inside the folder.
+	 * @property taps Taps that move to another screen.
+	 * @property swipeNext Name of the screen that any swipe or scroll moves to.
+	 * @property afterMilliseconds Time after which the screen moves on by itself.
+	 * @property afterNext Name of the screen that it moves on to by itself.
+	 */
+	private data class Screen(val frameFileName: String, val taps: List<TapTransition>, val swipeNext: String?, val afterMilliseconds: Long?, val afterNext: String?)
+
+	/**
+	 * A gesture that the bot performed.
+	 *
+	 * @property type One of "tap", "swipe" or "scroll".
+	 * @property screen Name of the screen that the gesture was performed on.
+	 * @property x X coordinate of the tap or the start of the swipe.
+	 * @property y Y coordinate of the tap or the start of the swipe.
+	 * @property detail File name of the template for taps, the end of the swipe or the direction of the scroll.
+	 * @property next Name of the screen that the gesture moved to or null if it stayed on the same screen.
+	 * @property elapsedMilliseconds Time since the replay started.
+	 */
+	data class Gesture(val type: String, val screen: String, val x: Double, val y: Double, val detail: String, val next: String?, val elapsedMilliseconds: Long)
+
+	private val screens: Map<String, Screen>
+	private val frames: MutableMap<String, Bitmap> = mutableMapOf()
+	private val recordedGestures: MutableList<Gesture> = mutableListOf()
+
+	private val startTime = System.nanoTime()
+	private var enteredTime = startTime
+
+	// DPI of the device that the frames were recorded on.
+	val displayDPI: Int
+
+	// Name of the screen that the bot is expected to finish on or null if it is not checked.
+	val endScreen: String?
+
+	var currentScreen: String
+		private set
+
+	var framesServed: Long = 0L
+		private set
+
+	init {
+		val graphFile = File(folder, "screen_graph.json")
+		if (!graphFile.exists()) {
+			throw Exception("The screen graph at ${graphFile.absolutePath} does not exist.")
+		}
+
+		val root = JSONObject(graphFile.readText())
+		val screensObject = root.getJSONObject("screens")
+		screens = screensObject.keys().asSequence().associateWith { name ->
+			val screenObject = screensObject.getJSONObject(name)
+			val tapsArray = screenObject.optJSONArray("taps")
+			val taps = (0 until (tapsArray?.length() ?: 0)).map { index ->
+				val tapObject = tapsArray!!.getJSONObject(index)
+				val regionArray = tapObject.getJSONArray("region")
+				TapTransition(IntArray(4) { regionArray.getInt(it) }, tapObject.getString("next"))
+			}
+
+			val afterObject = screenObject.optJSONObject("after")
+			Screen(
+				screenObject.getString("frame"), taps, if (screenObject.has("swipe")) screenObject.getString("swipe") else null,
+				afterObject?.getLong("milliseconds"), afterObject?.getString("next")
+			)
+		}
+
+		currentScreen = root.getString("start")
+		displayDPI = root.optInt("dpi", 420)
+		endScreen = if (root.has("end")) root.getString("end") else null
+
+		// Fail now instead of in the middle of a run if the graph points somewhere that does not exist.
+		val referencedScreens = listOfNotNull(currentScreen, endScreen) + screens.values.flatMap { screen -> screen.taps.map { it.next } + listOfNotNull(screen.swipeNext, screen.afterNext) }
+		referencedScreens.firstOrNull { it !in screens }?.let { throw Exception("The screen graph refers to the screen \"$it\" which does not exist.") }
+		screens.values.firstOrNull { !File(folder, it.frameFileName).exists() }?.let { throw Exception("The recorded frame ${File(folder, it.frameFileName).absolutePath} does not exist.") }
+	}
+
+	/**
+	 * Get every gesture that has been performed so far.
+	 */
+	val gestures: List<Gesture>
+		@Synchronized get() = recordedGestures.toList()
+
+	/**
+	 * Get the frame of the current screen like a screenshot of the device.
+	 *
+	 * @return The frame, which is shared between screenshots of the same screen and must not be recycled.
+	 */
+	@Synchronized
+	fun captureScreenshot(): Bitmap {
+		advanceByTime()
+		framesServed += 1
+		return frames.getOrPut(currentScreen) {
+			val file = File(folder, screens[currentScreen]!!.frameFileName)
+			BitmapFactory.decodeFile(file.path) ?: throw Exception("Failed to decode the recorded frame at ${file.absolutePath}.")
+		}
+	}
+
+	@Synchronized
+	override fun tap(x: Double, y: Double, imageName: String, longPress: Boolean, taps: Int): Boolean {
+		advanceByTime()
+
+		val next = screens[currentScreen]!!.taps.firstOrNull { transition ->
+			val region = transition.region
+			x >= region[0] && x < region[0] + region[2] && y >= region[1] && y < region[1] + region[3]
+		}?.next
+
+		record("tap", x, y, imageName, next)
+		return true
+	}
+
+	@Synchronized
+	override fun swipe(oldX: Float, oldY: Float, newX: Float, newY: Float, duration: Long): Boolean {
+		advanceByTime()
+		record("swipe", oldX.toDouble(), oldY.toDouble(), "$newX,$newY", screens[currentScreen]!!.swipeNext)
+		return true
+	}
+
+	@Synchronized
+	override fun scroll(scrollDown: Boolean, duration: Long): Boolean {
+		advanceByTime()
+		record("scroll", 0.0, 0.0, if (scrollDown) "down" else "up", screens[currentScreen]!!.swipeNext)
+		return true
+	}
+
+	/**
+	 * Record the gesture and move to the next screen if it leads anywhere.
+	 *
+	 * @param type One of "tap", "swipe" or "scroll".
+	 * @param x X coordinate of the tap or the start of the swipe.
+	 * @param y Y coordinate of the tap or the start of the swipe.
+	 * @param detail File name of the template for taps, the end of the swipe or the direction of the scroll.
+	 * @param next Name of the screen to move to or null to stay on the current screen.
+	 */
+	private fun record(type: String, x: Double, y: Double, detail: String, next: String?) {
+		recordedGestures.add(Gesture(type, currentScreen, x, y, detail, next, (System.nanoTime() - startTime) / 1_000_000L))
+		if (next != null) {
+			moveTo(next)
+		}
+	}
+
+	/**
+	 * Follow the timed transitions of the screens that have been shown for long enough.
+	 */
+	private fun advanceByTime() {
+		var screen = screens[currentScreen]!!
+		while (screen.afterMilliseconds != null && (System.nanoTime() - enteredTime) / 1_000_000L >= screen.afterMilliseconds!!) {
+			// Carry over the time spent past the transition so that chained transitions keep their combined duration.
+			val enteredNextTime = enteredTime + (screen.afterMilliseconds!! * 1_000_000L)
+			moveTo(screen.afterNext!!)
+			enteredTime = enteredNextTime
+			screen = screens[currentScreen]!!
+		}
+	}
+
+	/**
+	 * Move to the screen.
+	 *
+	 * @param name Name of the screen.
+	 */
+	private fun moveTo(name: String) {
+		currentScreen = name
+		enteredTime = System.nanoTime()
+	}
+
+	/**
+	 * Write every recorded gesture to a CSV file with one row each.
+	 *
+	 * @param file The CSV file to overwrite.
+	 */
+	@Synchronized
+	fun exportGestures(file: File) {
+		val rows = recordedGestures.map { gesture ->
+			listOf(gesture.elapsedMilliseconds, gesture.type, gesture.screen, gesture.x, gesture.y, "\"${gesture.detail}\"", gesture.next ?: "").joinToString(",")
+		}
+
+		file.writeText((listOf("elapsed_ms,type,screen,x,y,detail,next") + rows).joinToString("\n") + "\n")
+	}
+
+	@Synchronized
+	override fun toString(): String {
+		val unmatched = recordedGestures.count { it.next == null }
+		return "Replayed $framesServed frames from ${folder.name} with ${recordedGestures.size} gestures ($unmatched did not change the screen), " +
+				"ending on \"$currentScreen\" after ${(System.nanoTime() - startTime) / 1_000_000L}ms"
+	}
+
+	companion object {
+		/**
+		 * The device of the replay that is running, which stands in for the screen and the Accessibility Service of the phone.
+		 */
+		@Volatile
+		var current: ReplayDevice? = null
+	}
+}
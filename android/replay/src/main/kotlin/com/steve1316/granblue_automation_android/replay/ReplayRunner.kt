@@ -0,0 +1,80 @@
+package com.steve1316.granblue_automation_android.replay
+
+import android.content.Context
+import android.content.res.AssetManager
+import com.steve1316.automation_library.data.SharedData
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity.loggerTag
+import com.steve1316.granblue_automation_android.bot.Game
+import com.steve1316.granblue_automation_android.utils.CustomJSONParser
+import com.steve1316.granblue_automation_android.utils.GestureDriver
+import java.io.File
+import kotlin.system.exitProcess
+
+private const val tag: String = "${loggerTag}ReplayRunner"
+
+/**
+ * Run the bot against a folder of recorded frames the same way that the app starts it, with the settings.json of the folder as the settings of the user.
+ *
+ * The folder holds the screen graph described in ReplayDevice, the frames that it refers to, settings.json and optionally room_codes.txt for Raids.
+ * Everything the bot writes, such as the match metrics and the device profile, ends up in the output folder along with every gesture inside replay_gestures.csv.
+ * The output folder is emptied beforehand so that every replay starts without anything learned on a previous one.
+ *
+ * @param args The replay folder and optionally the output folder.
+ */
+fun main(args: Array<String>) {
+	if (args.isEmpty()) {
+		System.err.println("Usage: <replay folder> [output folder]")
+		exitProcess(2)
+	}
+
+	val replayFolder = File(args[0]).absoluteFile
+	val outputFolder = (if (args.size > 1) File(args[1]) else File(System.getProperty("replay.output", "replays"), replayFolder.name)).absoluteFile
+	val assetsFolder = File(System.getProperty("replay.assets", "app/src/main/assets")).absoluteFile
+
+	nu.pattern.OpenCV.loadLocally()
+
+	outputFolder.deleteRecursively()
+	File(outputFolder, "files").mkdirs()
+	File(replayFolder, "settings.json").copyTo(File(outputFolder, "settings.json"))
+	File(replayFolder, "room_codes.txt").takeIf { it.exists() }?.copyTo(File(outputFolder, "room_codes.txt"))
+
+	val device = ReplayDevice(replayFolder)
+	ReplayDevice.current = device
+
+	// The display is the one that the frames were recorded on.
+	val firstFrame = device.captureScreenshot()
+	SharedData.displayWidth = firstFrame.width
+	SharedData.displayHeight = firstFrame.height
+	SharedData.displayDPI = device.displayDPI
+	SharedData.loggerTag = loggerTag
+
+	val context = Context(AssetManager(assetsFolder), File(outputFolder, "files"), outputFolder)
+	val startTime = System.currentTimeMillis()
+	var failure: Exception? = null
+	try {
+		// Same as the StartModule of the app.
+		CustomJSONParser().initializeSettings(context)
+		val game = Game(context)
+
+		// The Home screen test returns before start() sets up the gestures, so they are set up beforehand the same way.
+		game.gestureUtils = GestureDriver.Invalidating(device) { game.imageUtils.invalidateFrame() }
+
+		game.start()
+	} catch (e: Exception) {
+		failure = e
+		MessageLog.printToLog("[ERROR] Replay ended with an Exception: ${e.stackTraceToString()}", tag, isError = true)
+	}
+
+	val gesturesFile = File(outputFolder, "replay_gestures.csv")
+	device.exportGestures(gesturesFile)
+	MessageLog.printToLog("\n[INFO] $device", tag)
+	MessageLog.printToLog("[INFO] Replay took ${System.currentTimeMillis() - startTime}ms. Everything that it wrote is inside ${outputFolder.path}", tag)
+
+	val endedOnWrongScreen = device.endScreen != null && device.currentScreen != device.endScreen
+	if (endedOnWrongScreen) {
+		MessageLog.printToLog("[ERROR] Replay ended on \"${device.currentScreen}\" instead of \"${device.endScreen}\".", tag, isError = true)
+	}
+
+	exitProcess(if (failure != null || endedOnWrongScreen) 1 else 0)
+}
@@ -0,0 +1,36 @@
+package com.steve1316.granblue_automation_android.utils
+
+import android.content.Context
+import com.steve1316.automation_library.utils.MessageLog
+import com.steve1316.granblue_automation_android.MainActivity
+import com.steve1316.granblue_automation_android.data.ConfigData
+import java.io.File
+
+/**
+ * Replay version of the TwitterRoomFinder that hands out the room codes listed in room_codes.txt, one per line, instead of searching Twitter.
+ *
+ * @param context The context of the app whose external files folder holds room_codes.txt.
+ * @param configData The settings of the user.
+ */
+class TwitterRoomFinder(context: Context, private val configData: ConfigData) {
+	private val roomCodes: ArrayDeque<String> = ArrayDeque(
+		File(context.getExternalFilesDir(null), "room_codes.txt").takeIf { it.exists() }?.readLines()?.map { it.trim() }?.filter { it.isNotEmpty() } ?: listOf()
+	)
+
+	companion object {
+		private const val tag: String = "${MainActivity.loggerTag}TwitterRoomFinder"
+	}
+
+	fun connect() {
+		MessageLog.printToLog("\n[TWITTER] Replaying ${roomCodes.size} room codes for ${configData.missionName} instead of connecting to Twitter.", tag)
+	}
+
+	/**
+	 * Get the next room code of the replay.
+	 *
+	 * @return The room code or an empty string if every room code has been handed out.
+	 */
+	fun getRoomCode(): String {
+		return roomCodes.removeFirstOrNull() ?: ""
+	}
+}
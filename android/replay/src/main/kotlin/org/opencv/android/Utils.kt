@@ -0,0 +1,54 @@
+package org.opencv.android
+
+import android.graphics.Bitmap
+import org.opencv.core.CvType
+import org.opencv.core.Mat
+
+/**
+ * JVM version of the Bitmap conversions of the OpenCV Android SDK.
+ */
+object Utils {
+	/**
+	 * Convert the Bitmap to an RGBA Mat with the colors left premultiplied like the Android SDK does by default.
+	 *
+	 * @param bitmap The Bitmap to convert.
+	 * @param mat The Mat to write the colors into. It is reallocated if it has the wrong size or type.
+	 */
+	@JvmStatic
+	fun bitmapToMat(bitmap: Bitmap, mat: Mat) {
+		val pixels = IntArray(bitmap.width * bitmap.height)
+		bitmap.getPixels(pixels, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+
+		val bytes = ByteArray(pixels.size * 4)
+		pixels.forEachIndexed { index, color ->
+			bytes[index * 4] = (color shr 16).toByte()
+			bytes[index * 4 + 1] = (color shr 8).toByte()
+			bytes[index * 4 + 2] = color.toByte()
+			bytes[index * 4 + 3] = (color ushr 24).toByte()
+		}
+
+		mat.create(bitmap.height, bitmap.width, CvType.CV_8UC4)
+		mat.put(0, 0, bytes)
+	}
+
+	/**
+	 * Convert the RGBA Mat to the Bitmap.
+	 *
+	 * @param mat RGBA Mat of the same size as the Bitmap.
+	 * @param bitmap The Bitmap to write the colors into.
+	 */
+	@JvmStatic
+	fun matToBitmap(mat: Mat, bitmap: Bitmap) {
+		require(mat.type() == CvType.CV_8UC4 && mat.cols() == bitmap.width && mat.rows() == bitmap.height) { "The Mat must be RGBA and of the same size as the Bitmap" }
+
+		val bytes = ByteArray(bitmap.width * bitmap.height * 4)
+		mat.get(0, 0, bytes)
+
+		val pixels = IntArray(bitmap.width * bitmap.height) { index ->
+			((bytes[index * 4 + 3].toInt() and 0xFF) shl 24) or ((bytes[index * 4].toInt() and 0xFF) shl 16) or ((bytes[index * 4 + 1].toInt() and 0xFF) shl 8) or
+				(bytes[index * 4 + 2].toInt() and 0xFF)
+		}
+
+		bitmap.setPixels(pixels, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+	}
+}
@@ -126,6 +126,11 @@ export interface Settings {
         confidenceAll: number
         customScale: number
         enableTestForHomeScreen: boolean
+        enablePyramidMatching: boolean
+        enableBackgroundCapture: boolean
+        enableAdaptiveRetry: boolean
+        enableOfflineDigitRecognition: boolean
+        enableSessionRecording: boolean
     }
 
     // Adjustment Settings.
@@ -291,6 +296,11 @@ export const defaultSettings: Settings = {
         confidenceAll: 80,
         customScale: 1.0,
         enableTestForHomeScreen: false,
+        enablePyramidMatching: false,
+        enableBackgroundCapture: false,
+        enableAdaptiveRetry: false,
+        enableOfflineDigitRecognition: false,
+        enableSessionRecording: false,
     },
 }
 
@@ -744,10 +744,41 @@ const ExtraSettings = () => {
                 ) : null}
                 <Checkbox
                     text="Enable Test for Home Screen"
-                    subtitle={`Enables test for getting to the Home screen instead of the regular bot process. If the test fails, then it will run a different test to find which scale is appropriate for your device.\n\nUseful for troubleshooting working confidences and scales for device compatibility.`}
+                    subtitle={`Enables test for getting to the Home screen instead of the regular bot process. If the test fails, then it will calibrate which scale is appropriate for your device from the current screen and remember it for when no custom scale is set.\n\nUseful for troubleshooting working confidences and scales for device compatibility.`}
                     isChecked={bsc.settings.android.enableTestForHomeScreen}
                     onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enableTestForHomeScreen: !bsc.settings.android.enableTestForHomeScreen } })}
                 />
+                <Checkbox
+                    text="Enable Coarse-to-Fine Matching"
+                    subtitle="Experimental, it has not been verified against real game screenshots yet. Enables matching a downscaled screenshot first to find candidate locations and then only verifying those locations at full resolution. Reduces the time spent on each match at the cost of possibly missing very small images."
+                    isChecked={bsc.settings.android.enablePyramidMatching}
+                    onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enablePyramidMatching: !bsc.settings.android.enablePyramidMatching } })}
+                />
+                <Checkbox
+                    text="Enable Background Screenshot Capture"
+                    subtitle="Enables capturing screenshots on a separate thread so that capturing the next screenshot overlaps with analyzing the current one. Removes the fixed delay between each search attempt at the cost of higher CPU usage while searching."
+                    isChecked={bsc.settings.android.enableBackgroundCapture}
+                    onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enableBackgroundCapture: !bsc.settings.android.enableBackgroundCapture } })}
+                />
+                <Checkbox
+                    text="Enable Adaptive Retry Backoff"
+                    subtitle="Enables waiting exponentially longer between each search attempt within a time limit based on the number of tries instead of a fixed delay. Searches give up early if the screen stays unchanged for several attempts in a row."
+                    isChecked={bsc.settings.android.enableAdaptiveRetry}
+                    onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enableAdaptiveRetry: !bsc.settings.android.enableAdaptiveRetry } })}
+                />
+                <Checkbox
+                    text="Enable Offline Digit Recognition"
+                    subtitle="Enables reading item amounts by comparing each digit against digits learned on this device instead of running Google's OCR on every item. Google's OCR is still used for any amount that cannot be read this way and to learn new digits."
+                    isChecked={bsc.settings.android.enableOfflineDigitRecognition}
+                    onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enableOfflineDigitRecognition: !bsc.settings.android.enableOfflineDigitRecognition } })}
+                />
+
+                <Checkbox
+                    text="Enable Session Recording"
+                    subtitle="Enables recording every screenshot, match result and gesture of the run into compressed session files inside the app's external files folder for reproducing slowdowns. The oldest recordings are deleted once they take up more than 200MB."
+                    isChecked={bsc.settings.android.enableSessionRecording}
+                    onPress={() => bsc.setSettings({ ...bsc.settings, android: { ...bsc.settings.android, enableSessionRecording: !bsc.settings.android.enableSessionRecording } })}
+                />
             </View>
         )
     }